@@ -0,0 +1,171 @@
+package administrative_services.benchmark;
+
+import administrative_services.security_manager.Access;
+import administrative_services.security_manager.AccessPolicy;
+import administrative_services.security_manager.Role;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures AccessPolicy decisions per second: on one thread, on every core,
+ * and on every core while another thread keeps recompiling employees' grants
+ * the way role changes and terminations do. Each employee gets a role's
+ * default access plus a few rooms, so the bitsets span several words.
+ *
+ * Usage: java -cp out administrative_services.benchmark.AccessPolicyBenchmark [employees] [seconds]
+ */
+public class AccessPolicyBenchmark {
+    private static final int ROOMS = 500;
+    private static final int QUERIES = 1 << 16;
+
+    // keeps the JIT from dropping decisions nobody reads
+    static volatile int sink;
+
+    public static void main(String[] args) throws Exception {
+        int employees = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 2;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        Random random = new Random(7);
+        HashMap<Integer, List<Access>> accessMap = new HashMap<>();
+        for (int id = 1; id <= employees; id++) {
+            accessMap.put(id, grants(id, random));
+        }
+        AccessPolicy policy = new AccessPolicy();
+        long began = System.nanoTime();
+        policy.compileAll(accessMap);
+        System.out.printf("Compiled %,d employees, %,d resources in %.1f ms%n%n",
+                employees, policy.resourceCount(), (System.nanoTime() - began) / 1e6);
+
+        // fixed query mix so every run asks the same questions
+        int[] queryEmployees = new int[QUERIES];
+        String[] queryResources = new String[QUERIES];
+        Access.AccessLevel[] queryLevels = new Access.AccessLevel[QUERIES];
+        Access.AccessLevel[] levels = Access.AccessLevel.values();
+        Role[] roles = Role.values();
+        for (int i = 0; i < QUERIES; i++) {
+            queryEmployees[i] = 1 + random.nextInt(employees + employees / 10);
+            String[] defaults = roles[random.nextInt(roles.length)].getDefaultAccess();
+            queryResources[i] = random.nextBoolean() ? "Room " + random.nextInt(ROOMS)
+                    : defaults[random.nextInt(defaults.length)];
+            queryLevels[i] = levels[random.nextInt(levels.length)];
+        }
+        for (int i = 0; i < QUERIES; i++) {
+            boolean allowed = policy.hasAccess(queryEmployees[i], queryResources[i], queryLevels[i]);
+            if (allowed != scan(accessMap.get(queryEmployees[i]), queryResources[i], queryLevels[i])) {
+                throw new IllegalStateException("Decision differs from grants for employee " + queryEmployees[i]);
+            }
+        }
+
+        System.out.printf("%-22s %8s %16s %10s%n", "Benchmark", "Threads", "decisions/s", "ns/op");
+        run("decide", 1, seconds, policy, queryEmployees, queryResources, queryLevels, null);
+        run("decide", threads, seconds, policy, queryEmployees, queryResources, queryLevels, null);
+        run("decide+recompile", threads, seconds, policy, queryEmployees, queryResources, queryLevels, () -> {
+            int id = 1 + random.nextInt(employees);
+            policy.compile(id, accessMap.get(id));
+        });
+    }
+
+    private static void run(String name, int threads, double seconds, AccessPolicy policy,
+            int[] employees, String[] resources, Access.AccessLevel[] levels, Runnable writer) throws Exception {
+        for (int warmup = 0; warmup < 2; warmup++) {
+            decide(threads, seconds / 4, policy, employees, resources, levels, writer);
+        }
+        long decisions = decide(threads, seconds, policy, employees, resources, levels, writer);
+        double perSecond = decisions / seconds;
+        System.out.printf("%-22s %8d %16.0f %10.2f%n", name, threads, perSecond, threads * 1e9 / perSecond);
+    }
+
+    private static long decide(int threads, double seconds, AccessPolicy policy,
+            int[] employees, String[] resources, Access.AccessLevel[] levels, Runnable writer) throws Exception {
+        LongAdder decisions = new LongAdder();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 7919;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long done = 0;
+                int allowed = 0;
+                while (running.get()) {
+                    for (int i = 0; i < 1024; i++) {
+                        int q = (offset + (int) done + i) & (QUERIES - 1);
+                        if (policy.hasAccess(employees[q], resources[q], levels[q])) {
+                            allowed++;
+                        }
+                    }
+                    done += 1024;
+                }
+                decisions.add(done);
+                sink += allowed;
+            });
+            workers.add(thread);
+            thread.start();
+        }
+        Thread recompiler = null;
+        if (writer != null) {
+            recompiler = new Thread(() -> {
+                while (running.get()) {
+                    writer.run();
+                }
+            });
+            recompiler.start();
+        }
+        start.countDown();
+        Thread.sleep((long) (seconds * 1000));
+        running.set(false);
+        for (Thread thread : workers) {
+            thread.join();
+        }
+        if (recompiler != null) {
+            recompiler.join();
+        }
+        return decisions.sum();
+    }
+
+    private static List<Access> grants(int employeeId, Random random) {
+        Role role = Role.values()[random.nextInt(Role.count())];
+        Access.AccessLevel[] levels = Access.AccessLevel.values();
+        List<Access> list = new ArrayList<>();
+        for (String resource : role.getDefaultAccess()) {
+            list.add(grant(employeeId, resource, Access.AccessLevel.READ_WRITE));
+        }
+        for (int i = 0; i < 4; i++) {
+            Access room = grant(employeeId, "Room " + random.nextInt(ROOMS), levels[random.nextInt(levels.length)]);
+            if (random.nextInt(8) == 0) {
+                room.revoke();
+            }
+            list.add(room);
+        }
+        return list;
+    }
+
+    private static Access grant(int employeeId, String resource, Access.AccessLevel level) {
+        Access access = new Access("ACC-" + employeeId, employeeId, resource, Access.AccessType.ROOM, level, "bench");
+        access.activate();
+        return access;
+    }
+
+    /** What the access list says directly, to check the compiled answer against. */
+    private static boolean scan(List<Access> list, String resource, Access.AccessLevel level) {
+        if (list == null) {
+            return false;
+        }
+        for (Access a : list) {
+            if (a.isActive() && a.getResourceName().equals(resource) && a.getLevel().compareTo(level) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
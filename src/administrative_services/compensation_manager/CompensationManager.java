@@ -100,11 +100,7 @@ public class CompensationManager {
 
     // Helper
     private Employee getEmployee(int id) {
-        for (Employee e : onboardingService.listEmployees()) {
-            if (e.getId() == id)
-                return e;
-        }
-        return null;
+        return onboardingService.getEmployee(id);
     }
 
     // Load/Save
@@ -12,7 +12,10 @@ import java.util.UUID;
 public class AccessManager {
     private OnboardingService onboardingService;
     private HashMap<String, Badge> badges;
+    // employeeId -> the one active badge, kept in step with activateBadge/revokeBadge
+    private HashMap<Integer, Badge> activeBadges;
     private HashMap<Integer, List<Access>> accessMap;
+    private AccessPolicy policy;
     private AuditLog auditLog;
 
     private static final String DATA_DIR = "src/administrative_services/data/";
@@ -22,8 +25,10 @@ public class AccessManager {
     public AccessManager(OnboardingService onboardingService) {
         this.onboardingService = onboardingService;
         this.badges = new HashMap<>();
+        this.activeBadges = new HashMap<>();
         this.accessMap = new HashMap<>();
-        this.auditLog = new AuditLog();
+        this.policy = new AccessPolicy();
+        this.auditLog = AuditLog.shared();
 
         File dir = new File(DATA_DIR);
         if (!dir.exists())
@@ -31,22 +36,35 @@ public class AccessManager {
 
         loadBadges();
         loadAccess();
+        policy.compileAll(accessMap);
+    }
+
+    public boolean hasAccess(int employeeId, String resource, Access.AccessLevel level) {
+        return policy.hasAccess(employeeId, resource, level);
     }
 
     public Employee getEmployee(int id) {
-        for (Employee e : onboardingService.listEmployees()) {
-            if (e.getId() == id)
-                return e;
-        }
-        return null;
+        return onboardingService.getEmployee(id);
     }
 
     public Badge getEmployeeBadge(int employeeId) {
-        for (Badge b : badges.values()) {
-            if (b.getEmployeeId() == employeeId && b.isActive())
-                return b;
+        Badge b = activeBadges.get(employeeId);
+        if (b != null && !b.isActive()) {
+            // status changed on the Badge itself, e.g. markLost()
+            activeBadges.remove(employeeId);
+            return null;
         }
-        return null;
+        return b;
+    }
+
+    private void activateBadge(Badge badge) {
+        badge.activate();
+        activeBadges.put(badge.getEmployeeId(), badge);
+    }
+
+    private void revokeBadge(Badge badge) {
+        badge.revoke();
+        activeBadges.remove(badge.getEmployeeId(), badge);
     }
 
     public Badge assignBadge(int employeeId, Role role, String issuedBy) throws ValidationException {
@@ -61,7 +79,7 @@ public class AccessManager {
 
         String badgeId = "BDG-" + UUID.randomUUID().toString().substring(0, 8);
         Badge badge = new Badge(badgeId, employeeId, role, issuedBy);
-        badge.activate();
+        activateBadge(badge);
         badges.put(badgeId, badge);
 
         grantRoleAccess(employeeId, role, issuedBy);
@@ -101,6 +119,7 @@ public class AccessManager {
             access.activate();
             list.add(access);
         }
+        policy.compile(employeeId, list);
     }
 
     private void revokeAllAccess(int employeeId) {
@@ -112,15 +131,15 @@ public class AccessManager {
             if (a.isActive())
                 a.revoke();
         }
+        policy.compile(employeeId, list);
     }
 
     public void processLastDay(int employeeId, String processedBy, boolean itemsMissing) {
         // revoke badge
-        for (Badge b : badges.values()) {
-            if (b.getEmployeeId() == employeeId && b.isActive()) {
-                b.revoke();
-                auditLog.logBadgeChange(employeeId, b.getBadgeId(), "REVOKED");
-            }
+        Badge b = getEmployeeBadge(employeeId);
+        if (b != null) {
+            revokeBadge(b);
+            auditLog.logBadgeChange(employeeId, b.getBadgeId(), "REVOKED");
         }
 
         // revoke access
@@ -163,6 +182,9 @@ public class AccessManager {
                         b.setRevokedDate(LocalDateTime.parse(p[6]));
                     }
                     badges.put(p[0], b);
+                    if (b.isActive()) {
+                        activeBadges.put(b.getEmployeeId(), b);
+                    }
                 }
             }
         } catch (Exception e) {
@@ -208,7 +230,6 @@ public class AccessManager {
     private void save() {
         saveBadges();
         saveAccess();
-        auditLog.save();
     }
 
     private void saveBadges() {
@@ -250,6 +271,10 @@ public class AccessManager {
         return accessMap;
     }
 
+    public AccessPolicy getPolicy() {
+        return policy;
+    }
+
     public AuditLog getAuditLog() {
         return auditLog;
     }
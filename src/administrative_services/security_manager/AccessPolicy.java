@@ -0,0 +1,126 @@
+package administrative_services.security_manager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Answers "may this employee use this resource at this level?" from
+ * precompiled grants. Resource names are interned to small ints, and each
+ * employee's active grants become one bitset per access level, a grant at a
+ * level also setting the bits of every level below it. A decision is a map
+ * lookup and a bit test.
+ *
+ * Readers see an immutable snapshot through a volatile field and never lock;
+ * changes build a new snapshot and swap it in.
+ */
+public class AccessPolicy {
+    private static final Access.AccessLevel[] LEVELS = Access.AccessLevel.values();
+    private static final long[][] NO_GRANTS = new long[LEVELS.length][0];
+
+    private static final class Snapshot {
+        final Map<String, Integer> resources;
+        final Map<Integer, long[][]> grants;
+
+        Snapshot(Map<String, Integer> resources, Map<Integer, long[][]> grants) {
+            this.resources = resources;
+            this.grants = grants;
+        }
+    }
+
+    private volatile Snapshot snapshot = new Snapshot(new HashMap<>(), new HashMap<>());
+
+    public boolean hasAccess(int employeeId, String resource, Access.AccessLevel level) {
+        Snapshot s = snapshot;
+        Integer resourceId = s.resources.get(resource);
+        return resourceId != null && test(s, employeeId, resourceId, level);
+    }
+
+    /** For callers that check the same resource often; -1 if nobody has ever been granted it. */
+    public int resourceId(String resource) {
+        Integer resourceId = snapshot.resources.get(resource);
+        return resourceId == null ? -1 : resourceId;
+    }
+
+    public boolean hasAccess(int employeeId, int resourceId, Access.AccessLevel level) {
+        return resourceId >= 0 && test(snapshot, employeeId, resourceId, level);
+    }
+
+    private static boolean test(Snapshot s, int employeeId, int resourceId, Access.AccessLevel level) {
+        long[][] levels = s.grants.get(employeeId);
+        if (levels == null) {
+            return false;
+        }
+        long[] bits = levels[level.ordinal()];
+        int word = resourceId >>> 6;
+        return word < bits.length && (bits[word] & (1L << resourceId)) != 0;
+    }
+
+    /** Replaces the employee's compiled grants with the active ones in {@code access}. */
+    public synchronized void compile(int employeeId, Collection<Access> access) {
+        Map<String, Integer> resources = new HashMap<>(snapshot.resources);
+        Map<Integer, long[][]> grants = new HashMap<>(snapshot.grants);
+        put(grants, employeeId, compile(resources, access));
+        snapshot = new Snapshot(resources, grants);
+    }
+
+    /** Recompiles every employee at once, as after loading. */
+    public synchronized void compileAll(Map<Integer, ? extends Collection<Access>> accessMap) {
+        Map<String, Integer> resources = new HashMap<>(snapshot.resources);
+        Map<Integer, long[][]> grants = new HashMap<>();
+        for (Map.Entry<Integer, ? extends Collection<Access>> e : accessMap.entrySet()) {
+            put(grants, e.getKey(), compile(resources, e.getValue()));
+        }
+        snapshot = new Snapshot(resources, grants);
+    }
+
+    public int resourceCount() {
+        return snapshot.resources.size();
+    }
+
+    private static void put(Map<Integer, long[][]> grants, int employeeId, long[][] levels) {
+        if (levels == NO_GRANTS) {
+            grants.remove(employeeId);
+        } else {
+            grants.put(employeeId, levels);
+        }
+    }
+
+    private static long[][] compile(Map<String, Integer> resources, Collection<Access> access) {
+        long[][] levels = null;
+        for (Access a : access) {
+            if (!a.isActive() || a.getResourceName() == null) {
+                continue;
+            }
+            Integer resourceId = resources.get(a.getResourceName());
+            if (resourceId == null) {
+                resourceId = resources.size();
+                resources.put(a.getResourceName(), resourceId);
+            }
+            if (levels == null) {
+                levels = new long[LEVELS.length][];
+            }
+            int word = resourceId >>> 6;
+            for (int level = 0; level <= a.getLevel().ordinal(); level++) {
+                long[] bits = levels[level];
+                if (bits == null || bits.length <= word) {
+                    long[] grown = new long[word + 1];
+                    if (bits != null) {
+                        System.arraycopy(bits, 0, grown, 0, bits.length);
+                    }
+                    levels[level] = bits = grown;
+                }
+                bits[word] |= 1L << resourceId;
+            }
+        }
+        if (levels == null) {
+            return NO_GRANTS;
+        }
+        for (int level = 0; level < levels.length; level++) {
+            if (levels[level] == null) {
+                levels[level] = new long[0];
+            }
+        }
+        return levels;
+    }
+}
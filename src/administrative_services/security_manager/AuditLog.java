@@ -1,14 +1,24 @@
 package administrative_services.security_manager;
 
 import java.io.*;
+import java.nio.file.Paths;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
 
 public class AuditLog {
-    private List<LogEntry> entries;
+    private final AuditSegments segments;
+    private final AuditRing ring;
     private static final String DATA_DIR = "src/administrative_services/data/";
     private static final String AUDIT_LOG_CSV = DATA_DIR + "audit_log.csv";
+    private static final String AUDIT_DIR = DATA_DIR + "audit/";
+    private static final int RING_CAPACITY = 8192;
+    private static AuditLog shared;
 
     public enum LogLevel {
         INFO, WARNING, ERROR
@@ -16,28 +26,41 @@ public class AuditLog {
 
     public static class LogEntry {
         private LocalDateTime timestamp;
+        private long epochMillis;
         private LogLevel level;
         private String action;
         private String details;
 
         public LogEntry(LogLevel level, String action, String details) {
-            this.timestamp = LocalDateTime.now();
+            this(System.currentTimeMillis(), level, action, details);
+        }
+
+        public LogEntry(LocalDateTime timestamp, LogLevel level, String action, String details) {
+            this.timestamp = timestamp;
+            this.epochMillis = millis(timestamp);
             this.level = level;
             this.action = action;
             this.details = details;
         }
 
-        public LogEntry(LocalDateTime timestamp, LogLevel level, String action, String details) {
-            this.timestamp = timestamp;
+        LogEntry(long epochMillis, LogLevel level, String action, String details) {
+            this.timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+            this.epochMillis = epochMillis;
             this.level = level;
             this.action = action;
             this.details = details;
         }
 
+        // local time, for display
         public LocalDateTime getTimestamp() {
             return timestamp;
         }
 
+        // the instant the entry was logged; unlike local time it never repeats when clocks go back
+        public long getEpochMillis() {
+            return epochMillis;
+        }
+
         public LogLevel getLevel() {
             return level;
         }
@@ -51,10 +74,34 @@ public class AuditLog {
         }
     }
 
-    public AuditLog() {
-        this.entries = new ArrayList<>();
+    // the audit log under the data directory; every caller in the process shares it
+    public static synchronized AuditLog shared() {
+        if (shared == null) {
+            shared = new AuditLog();
+            Runtime.getRuntime().addShutdownHook(new Thread(shared.ring::close, "audit-close"));
+        }
+        return shared;
+    }
+
+    private AuditLog() {
         ensureDataDirectory();
-        load();
+        try {
+            this.segments = new AuditSegments(Paths.get(AUDIT_DIR));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open audit log", e);
+        }
+        if (segments.nextSeq() == 0) {
+            importLegacy();
+        }
+        // -Dadministrative.audit.durability=WAIT_FOR_FLUSH makes every log call wait for its fsync
+        AuditRing.Durability durability = AuditRing.Durability.valueOf(
+                System.getProperty("administrative.audit.durability", "FIRE_AND_FORGET"));
+        this.ring = new AuditRing(segments, durability, RING_CAPACITY);
+    }
+
+    public AuditLog(AuditSegments segments, AuditRing.Durability durability, int ringCapacity) {
+        this.segments = segments;
+        this.ring = new AuditRing(segments, durability, ringCapacity);
     }
 
     private void ensureDataDirectory() {
@@ -64,35 +111,90 @@ public class AuditLog {
     }
 
     public void logInfo(String action, String details) {
-        entries.add(new LogEntry(LogLevel.INFO, action, details));
+        ring.publish(LogLevel.INFO, action, -1, null, details);
     }
 
     public void logWarning(String action, String details) {
-        entries.add(new LogEntry(LogLevel.WARNING, action, details));
+        ring.publish(LogLevel.WARNING, action, -1, null, details);
     }
 
     public void logError(String action, String details) {
-        entries.add(new LogEntry(LogLevel.ERROR, action, details));
+        ring.publish(LogLevel.ERROR, action, -1, null, details);
     }
 
     public void logAccessChange(int employeeId, String resource, String action) {
-        logInfo("Access Change", "Employee " + employeeId + ": " + resource + " - " + action);
+        ring.publish(LogLevel.INFO, "Access Change", employeeId, resource, action);
     }
 
     public void logBadgeChange(int employeeId, String badgeId, String action) {
-        logInfo("Badge Change", "Employee " + employeeId + ": " + badgeId + " - " + action);
+        ring.publish(LogLevel.INFO, "Badge Change", employeeId, badgeId, action);
     }
 
+    // reads the whole history from disk; prefer getRecentEntries
     public List<LogEntry> getEntries() {
-        return entries;
+        List<LogEntry> all = new ArrayList<>();
+        ring.sync();
+        try {
+            for (AuditSegments.Segment segment : segments.segments()) {
+                read(segment, all);
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading audit log: " + e.getMessage());
+        }
+        return all;
     }
 
+    // reads segments newest first, only as far back as needed
     public List<LogEntry> getRecentEntries(int count) {
-        int start = Math.max(0, entries.size() - count);
-        return new ArrayList<>(entries.subList(start, entries.size()));
+        LinkedList<LogEntry> recent = new LinkedList<>();
+        ring.sync();
+        try {
+            List<AuditSegments.Segment> all = segments.segments();
+            for (int i = all.size() - 1; i >= 0 && recent.size() < count; i--) {
+                List<LogEntry> entries = new ArrayList<>();
+                read(all.get(i), entries);
+                for (int j = entries.size() - 1; j >= 0 && recent.size() < count; j--) {
+                    recent.addFirst(entries.get(j));
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading audit log: " + e.getMessage());
+        }
+        return new ArrayList<>(recent);
     }
 
-    private void load() {
+    // sees everything logged before the call
+    public AuditQuery query() {
+        ring.sync();
+        try {
+            return new AuditQuery(segments.segments());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read audit log", e);
+        }
+    }
+
+    public AuditSegments getSegments() {
+        return segments;
+    }
+
+    public AuditRing getRing() {
+        return ring;
+    }
+
+    private static void read(AuditSegments.Segment segment, List<LogEntry> into) throws IOException {
+        try (AuditSegments.LineReader reader = new AuditSegments.LineReader(segment, 0)) {
+            String line;
+            while ((line = reader.next()) != null) {
+                LogEntry e = parse(line);
+                if (e != null) {
+                    into.add(e);
+                }
+            }
+        }
+    }
+
+    // one-time copy of the old single-file audit_log.csv into segments; the file itself is left as it is
+    private void importLegacy() {
         File file = new File(AUDIT_LOG_CSV);
         if (!file.exists())
             return;
@@ -105,23 +207,75 @@ public class AuditLog {
                     first = false;
                     continue;
                 }
-                String[] p = line.split(",", 4);
-                if (p.length >= 4) {
-                    entries.add(new LogEntry(LocalDateTime.parse(p[0]), LogLevel.valueOf(p[1]), p[2], p[3]));
+                LogEntry e = parse(line);
+                if (e != null) {
+                    segments.append(e.getEpochMillis(), employeeOf(e), format(e));
                 }
             }
-        } catch (Exception e) {
+        } catch (IOException e) {
+            System.out.println("Error importing audit log: " + e.getMessage());
+            return;
+        }
+        try {
+            segments.flush(true);
+        } catch (IOException e) {
+            System.out.println("Error importing audit log: " + e.getMessage());
         }
     }
 
+    // waits until everything logged so far is on disk
     public void save() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(AUDIT_LOG_CSV))) {
-            writer.println("Timestamp,Level,Action,Details");
-            for (LogEntry e : entries) {
-                writer.println(e.getTimestamp() + "," + e.getLevel() + "," + e.getAction() + "," + e.getDetails());
+        ring.sync();
+    }
+
+    public void close() {
+        ring.close();
+    }
+
+    // the timestamp carries its UTC offset so an hour repeated at the end of DST reads back unambiguously
+    static String format(LogEntry e) {
+        OffsetDateTime at = OffsetDateTime.ofInstant(Instant.ofEpochMilli(e.getEpochMillis()), ZoneId.systemDefault());
+        return at + "," + e.getLevel() + "," + oneLine(e.getAction()) + "," + oneLine(e.getDetails());
+    }
+
+    static LogEntry parse(String line) {
+        String[] p = line.split(",", 4);
+        if (p.length < 4)
+            return null;
+        try {
+            LogLevel level = LogLevel.valueOf(p[1]);
+            try {
+                return new LogEntry(OffsetDateTime.parse(p[0]).toInstant().toEpochMilli(), level, p[2], p[3]);
+            } catch (DateTimeParseException e) {
+                // audit_log.csv wrote local time without an offset
+                return new LogEntry(LocalDateTime.parse(p[0]), level, p[2], p[3]);
             }
-        } catch (IOException e) {
-            System.out.println("Error saving audit log: " + e.getMessage());
+        } catch (RuntimeException e) {
+            return null;
         }
     }
+
+    // a local time in this machine's zone; the earlier instant when it falls in a repeated hour
+    static long millis(LocalDateTime timestamp) {
+        return timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // the employee a badge or access change is about, or -1
+    static int employeeOf(LogEntry e) {
+        if (!"Badge Change".equals(e.getAction()) && !"Access Change".equals(e.getAction()))
+            return -1;
+        String details = e.getDetails();
+        int colon = details.indexOf(':');
+        if (!details.startsWith("Employee ") || colon < 0)
+            return -1;
+        try {
+            return Integer.parseInt(details.substring("Employee ".length(), colon));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private static String oneLine(String s) {
+        return s == null ? "" : s.replace('\n', ' ').replace('\r', ' ');
+    }
 }
\ No newline at end of file
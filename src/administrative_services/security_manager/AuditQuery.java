@@ -0,0 +1,208 @@
+package administrative_services.security_manager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A filtered read of the audit log, e.g. everything about one employee in a
+ * date range, or every ERROR since last week. Timestamps never decrease
+ * through the segments, so a time range is found by binary search: first
+ * over the segments' first timestamps, then over the chosen segment's sparse
+ * index. An employee filter reads only the offsets listed in each segment's
+ * employee index. Results are read from disk as the stream is consumed.
+ */
+public class AuditQuery {
+    private final List<AuditSegments.Segment> segments;
+    private long from = Long.MIN_VALUE;
+    private long to = Long.MAX_VALUE;
+    private int employeeId = -1;
+    private EnumSet<AuditLog.LogLevel> levels = EnumSet.allOf(AuditLog.LogLevel.class);
+
+    AuditQuery(List<AuditSegments.Segment> segments) {
+        this.segments = segments;
+    }
+
+    /** Entries from {@code from} to {@code to}, both inclusive. */
+    public AuditQuery between(LocalDateTime from, LocalDateTime to) {
+        this.from = AuditLog.millis(from);
+        this.to = AuditLog.millis(to);
+        return this;
+    }
+
+    public AuditQuery since(LocalDateTime from) {
+        this.from = AuditLog.millis(from);
+        return this;
+    }
+
+    /** Entries logged through logBadgeChange or logAccessChange for this employee. */
+    public AuditQuery employee(int employeeId) {
+        this.employeeId = employeeId;
+        return this;
+    }
+
+    public AuditQuery levels(AuditLog.LogLevel first, AuditLog.LogLevel... rest) {
+        this.levels = EnumSet.of(first, rest);
+        return this;
+    }
+
+    /**
+     * Matching entries, oldest first. The stream holds a segment open while
+     * it is being read; close it when stopping early.
+     */
+    public Stream<AuditLog.LogEntry> stream() {
+        Results results = new Results();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(results::close);
+    }
+
+    private final class Results implements Iterator<AuditLog.LogEntry> {
+        private int segment;
+        private AuditSegments.LineReader lines;
+        private long[] offsets;
+        private int nextOffset;
+        private AuditLog.LogEntry next;
+        private boolean done;
+
+        Results() {
+            try {
+                segment = firstSegment();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                try {
+                    next = advance();
+                } catch (IOException e) {
+                    close();
+                    throw new UncheckedIOException(e);
+                }
+                if (next == null) {
+                    close();
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public AuditLog.LogEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            AuditLog.LogEntry entry = next;
+            next = null;
+            return entry;
+        }
+
+        private AuditLog.LogEntry advance() throws IOException {
+            while (true) {
+                if (lines == null) {
+                    if (segment == segments.size() || !open(segments.get(segment++))) {
+                        return null;
+                    }
+                }
+                String line;
+                if (offsets != null) {
+                    if (nextOffset == offsets.length) {
+                        closeSegment();
+                        continue;
+                    }
+                    lines.seek(offsets[nextOffset++]);
+                    line = lines.next();
+                } else {
+                    line = lines.next();
+                    if (line == null) {
+                        closeSegment();
+                        continue;
+                    }
+                }
+                AuditLog.LogEntry entry = line == null ? null : AuditLog.parse(line);
+                if (entry == null) {
+                    continue;
+                }
+                long millis = entry.getEpochMillis();
+                if (millis > to) {
+                    return null;
+                }
+                if (millis >= from && levels.contains(entry.getLevel())) {
+                    return entry;
+                }
+            }
+        }
+
+        /** Positions a reader at the first entry that can match; false once past the range. */
+        private boolean open(AuditSegments.Segment s) throws IOException {
+            long[] index = AuditSegments.readIndex(s);
+            if (index.length == 0 || index[0] > to) {
+                return false;
+            }
+            long start = 0;
+            int low = 0;
+            int high = index.length / 2;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (index[mid * 2] < from) {
+                    start = index[mid * 2 + 1];
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            if (employeeId >= 0) {
+                offsets = AuditSegments.readEmployeeOffsets(s, employeeId);
+                nextOffset = 0;
+                while (nextOffset < offsets.length && offsets[nextOffset] < start) {
+                    nextOffset++;
+                }
+            }
+            lines = new AuditSegments.LineReader(s, start);
+            return true;
+        }
+
+        private void closeSegment() throws IOException {
+            lines.close();
+            lines = null;
+            offsets = null;
+        }
+
+        void close() {
+            done = true;
+            if (lines != null) {
+                try {
+                    closeSegment();
+                } catch (IOException e) {
+                    // nothing left to read from it
+                }
+            }
+        }
+    }
+
+    /** The last segment whose first entry is before {@code from}, where the range can start. */
+    private int firstSegment() throws IOException {
+        int low = 0;
+        int high = segments.size();
+        int first = 0;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (AuditSegments.firstMillis(segments.get(mid)) < from) {
+                first = mid;
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return first;
+    }
+}
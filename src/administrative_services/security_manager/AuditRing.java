@@ -0,0 +1,270 @@
+package administrative_services.security_manager;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands audit entries from the threads that log them to one writer thread.
+ * Callers claim a slot in a preallocated ring with a CAS, fill in its fields
+ * and publish it; nothing is allocated on their side. The writer drains
+ * whatever has been published, appends it to the AuditSegments and forces
+ * the whole batch to disk with one fsync.
+ *
+ * With FIRE_AND_FORGET a caller never waits: when the ring is full the
+ * entry is dropped and counted. With WAIT_FOR_FLUSH a caller waits for room
+ * and then until its entry has been forced to disk, and learns whether the
+ * write or the fsync failed.
+ *
+ * close() sets a bit in the claim counter, so a claim either lands before it
+ * and is written, or fails and is dropped.
+ */
+public class AuditRing {
+    public enum Durability {
+        FIRE_AND_FORGET, WAIT_FOR_FLUSH
+    }
+
+    private static final AuditLog.LogLevel[] LEVELS = AuditLog.LogLevel.values();
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+    private static final long FULL_PARK_NANOS = 50_000;
+    private static final long CLOSED = 1L << 62;
+
+    private final AuditSegments segments;
+    private final Durability durability;
+    private final int mask;
+
+    // slot fields; a slot is readable once published[slot] holds its sequence
+    private final long[] millis;
+    private final int[] levels;
+    private final String[] actions;
+    private final int[] employeeIds;
+    private final String[] subjects;
+    private final String[] texts;
+    private final AtomicLongArray published;
+
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    // [from, to) ranges of sequences that could not be written or forced; only grows on I/O errors
+    private final ConcurrentSkipListMap<Long, Long> failures = new ConcurrentSkipListMap<>();
+    private volatile long flushed;
+    private volatile long handled;
+    private volatile boolean writerParked;
+    private volatile boolean closed;
+    private final Object flushLock = new Object();
+    private final Thread writer;
+    private long lastMillis;
+
+    public AuditRing(AuditSegments segments, Durability durability, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+        }
+        this.segments = segments;
+        this.durability = durability;
+        this.mask = capacity - 1;
+        this.millis = new long[capacity];
+        this.levels = new int[capacity];
+        this.actions = new String[capacity];
+        this.employeeIds = new int[capacity];
+        this.subjects = new String[capacity];
+        this.texts = new String[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        this.writer = new Thread(this::drain, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues one entry. With an employee id of 0 or more the details are
+     * written as "Employee id: subject - text", otherwise as {@code text}.
+     * Returns false if the entry was dropped, or with WAIT_FOR_FLUSH if it
+     * could not be written to disk.
+     */
+    public boolean publish(AuditLog.LogLevel level, String action, int employeeId, String subject, String text) {
+        long seq = claim();
+        if (seq < 0) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        int slot = (int) seq & mask;
+        millis[slot] = System.currentTimeMillis();
+        levels[slot] = level.ordinal();
+        actions[slot] = action;
+        employeeIds[slot] = employeeId;
+        subjects[slot] = subject;
+        texts[slot] = text;
+        published.set(slot, seq);
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+        if (durability == Durability.WAIT_FOR_FLUSH) {
+            return awaitHandled(seq + 1) && !isFailed(seq);
+        }
+        return true;
+    }
+
+    private long claim() {
+        while (true) {
+            long seq = claimed.get();
+            if ((seq & CLOSED) != 0) {
+                return -1;
+            }
+            if (seq - consumed.get() > mask) {
+                if (durability == Durability.FIRE_AND_FORGET) {
+                    return -1;
+                }
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+                continue;
+            }
+            if (claimed.compareAndSet(seq, seq + 1)) {
+                return seq;
+            }
+        }
+    }
+
+    /** Waits until everything published so far has been written, or has failed. */
+    public void sync() {
+        awaitHandled(claimed.get() & ~CLOSED);
+    }
+
+    /** Waits until every sequence below {@code end} has been written or has failed. */
+    private boolean awaitHandled(long end) {
+        if (handled >= end) {
+            return true;
+        }
+        LockSupport.unpark(writer);
+        synchronized (flushLock) {
+            while (handled < end && writer.isAlive()) {
+                try {
+                    flushLock.wait(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return handled >= end;
+    }
+
+    private boolean isFailed(long seq) {
+        Map.Entry<Long, Long> range = failures.floorEntry(seq);
+        return range != null && seq < range.getValue();
+    }
+
+    /** Drains what is queued, stops the writer and closes the segments. */
+    public void close() {
+        // no claim can succeed after this, so the writer knows exactly where to stop
+        claimed.getAndUpdate(c -> c | CLOSED);
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Entries published or being published but not yet written. */
+    public long backlog() {
+        return (claimed.get() & ~CLOSED) - consumed.get();
+    }
+
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /** Entries that were taken off the ring but could not be written or forced to disk. */
+    public long failed() {
+        return failed.get();
+    }
+
+    /** End of the last batch that was forced to disk. */
+    public long flushed() {
+        return flushed;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    private void drain() {
+        long next = consumed.get();
+        while (true) {
+            boolean stopping = closed;
+            long batchStart = next;
+            int lost = 0;
+            while (published.get((int) next & mask) == next) {
+                if (!write((int) next & mask)) {
+                    failures.put(next, next + 1);
+                    lost++;
+                }
+                next++;
+                if (next - batchStart > mask) {
+                    break;
+                }
+            }
+            if (next > batchStart) {
+                consumed.set(next);
+                try {
+                    segments.flush(true);
+                    flushed = next;
+                    failed.addAndGet(lost);
+                } catch (IOException e) {
+                    System.out.println("Error writing audit log: " + e.getMessage());
+                    // nothing in the batch is known to be on disk
+                    failures.subMap(batchStart, next).clear();
+                    failures.put(batchStart, next);
+                    failed.addAndGet(next - batchStart);
+                }
+                handled = next;
+                synchronized (flushLock) {
+                    flushLock.notifyAll();
+                }
+            } else if (stopping && next == (claimed.get() & ~CLOSED)) {
+                break;
+            } else {
+                writerParked = true;
+                if (published.get((int) next & mask) != next && !closed) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                writerParked = false;
+            }
+        }
+        try {
+            segments.close();
+        } catch (IOException e) {
+            System.out.println("Error closing audit log: " + e.getMessage());
+        }
+        synchronized (flushLock) {
+            flushLock.notifyAll();
+        }
+    }
+
+    private boolean write(int slot) {
+        // entries go out in sequence order; keep their timestamps in that order too
+        long at = Math.max(millis[slot], lastMillis);
+        lastMillis = at;
+        int employeeId = employeeIds[slot];
+        String details = employeeId < 0 ? texts[slot]
+                : "Employee " + employeeId + ": " + subjects[slot] + " - " + texts[slot];
+        AuditLog.LogEntry entry = new AuditLog.LogEntry(at, LEVELS[levels[slot]], actions[slot], details);
+        actions[slot] = null;
+        subjects[slot] = null;
+        texts[slot] = null;
+        try {
+            segments.append(at, employeeId, AuditLog.format(entry));
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error writing audit log: " + e.getMessage());
+            return false;
+        }
+    }
+}
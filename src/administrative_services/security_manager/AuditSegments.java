@@ -0,0 +1,421 @@
+package administrative_services.security_manager;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Append-only store behind AuditLog. Entries go to numbered segment files,
+ * one CSV line each, and a new segment is started once the current one
+ * passes a size or age limit. Only the current segment is kept open.
+ *
+ * Beside every segment is a sparse index: a (timestamp millis, byte offset)
+ * pair of longs for every INDEX_INTERVAL-th entry, so a reader can seek into
+ * a segment without scanning it from the start. A second file lists an
+ * (employee id, byte offset) pair for every entry about an employee.
+ *
+ * The directory is locked while it is open, so a second AuditSegments on it,
+ * in this process or another, fails instead of appending to the same segment.
+ */
+public class AuditSegments {
+    public static final int INDEX_INTERVAL = 64;
+    public static final long DEFAULT_SEGMENT_BYTES = 4L << 20;
+    public static final Duration DEFAULT_SEGMENT_AGE = Duration.ofDays(1);
+
+    private static final String PREFIX = "audit-";
+    private static final String DATA = ".csv";
+    private static final String INDEX = ".idx";
+    private static final String EMPLOYEES = ".emp";
+    private static final String LOCK = "audit.lock";
+    private static final int BUFFER = 1 << 16;
+    private static final byte[] NEWLINE = { '\n' };
+
+    /** A segment on disk; {@code firstSeq} is the sequence number of its first entry. */
+    public record Segment(long firstSeq, Path data, Path index, Path employees) {}
+
+    private final Path dir;
+    private final long maxBytes;
+    private final long maxAgeMillis;
+    private final List<Segment> segments = new ArrayList<>();
+    private final FileLock lock;
+
+    // current segment
+    private FileChannel data;
+    private FileChannel index;
+    private FileChannel employees;
+    private final ByteBuffer dataBuffer = ByteBuffer.allocate(BUFFER);
+    private final ByteBuffer indexBuffer = ByteBuffer.allocate(16 * 256);
+    private final ByteBuffer employeeBuffer = ByteBuffer.allocate(12 * 1024);
+    private long size;
+    private long entries;
+    private long firstMillis;
+    private long nextSeq;
+
+    public AuditSegments(Path dir) throws IOException {
+        this(dir, DEFAULT_SEGMENT_BYTES, DEFAULT_SEGMENT_AGE);
+    }
+
+    public AuditSegments(Path dir, long maxBytes, Duration maxAge) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = maxAge.toMillis();
+        Files.createDirectories(dir);
+        this.lock = lock(dir);
+        try {
+            load();
+        } catch (IOException | RuntimeException e) {
+            lock.channel().close();
+            throw e;
+        }
+    }
+
+    private static FileLock lock(Path dir) throws IOException {
+        FileChannel channel = FileChannel.open(dir.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("Audit log is already open: " + dir);
+        }
+        return lock;
+    }
+
+    private void load() throws IOException {
+        List<Long> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*" + DATA)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    found.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - DATA.length())));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        Collections.sort(found);
+        for (long firstSeq : found) {
+            segments.add(segment(firstSeq));
+        }
+        if (segments.isEmpty()) {
+            Segment first = segment(0);
+            segments.add(first);
+            open(first);
+        } else {
+            recover(segments.get(segments.size() - 1));
+        }
+    }
+
+    /**
+     * Appends one entry; it is on disk after the next {@link #flush}.
+     * {@code employeeId} is the employee the entry is about, or -1.
+     */
+    public synchronized void append(long millis, int employeeId, String line) throws IOException {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        int length = bytes.length + 1;
+        if (entries > 0 && (size + length > maxBytes || millis - firstMillis >= maxAgeMillis)) {
+            rotate();
+        }
+        if (entries % INDEX_INTERVAL == 0) {
+            index(millis, size);
+        }
+        if (employeeId >= 0) {
+            indexEmployee(employeeId, size);
+        }
+        if (length > dataBuffer.remaining()) {
+            drain(dataBuffer, data);
+        }
+        if (length > dataBuffer.capacity()) {
+            writeFully(data, ByteBuffer.wrap(bytes));
+            writeFully(data, ByteBuffer.wrap(NEWLINE));
+        } else {
+            dataBuffer.put(bytes).put((byte) '\n');
+        }
+        size += length;
+        entries++;
+        nextSeq++;
+    }
+
+    private void index(long millis, long offset) throws IOException {
+        if (indexBuffer.remaining() < 16) {
+            drain(indexBuffer, index);
+        }
+        indexBuffer.putLong(millis).putLong(offset);
+        if (entries == 0) {
+            firstMillis = millis;
+        }
+    }
+
+    private void indexEmployee(int employeeId, long offset) throws IOException {
+        if (employeeBuffer.remaining() < 12) {
+            drain(employeeBuffer, employees);
+        }
+        employeeBuffer.putInt(employeeId).putLong(offset);
+    }
+
+    /** Writes out buffered entries, forcing them to the device when {@code force}. */
+    public synchronized void flush(boolean force) throws IOException {
+        drainAll();
+        if (force) {
+            data.force(false);
+            index.force(false);
+            employees.force(false);
+        }
+    }
+
+    /** Writes out what is buffered, closes the current segment and unlocks the directory. */
+    public synchronized void close() throws IOException {
+        try {
+            closeSegment();
+        } finally {
+            lock.channel().close();
+        }
+    }
+
+    private void closeSegment() throws IOException {
+        flush(true);
+        data.close();
+        index.close();
+        employees.close();
+    }
+
+    /** Segments oldest first, the current one last, with everything appended so far readable. */
+    public synchronized List<Segment> segments() throws IOException {
+        drainAll();
+        return new ArrayList<>(segments);
+    }
+
+    /** Sequence number the next entry will get; also the number of entries ever appended. */
+    public synchronized long nextSeq() {
+        return nextSeq;
+    }
+
+    /** The segment's sparse index as {millis, offset, millis, offset, ...}. */
+    public static long[] readIndex(Segment segment) throws IOException {
+        if (!Files.exists(segment.index())) {
+            return new long[0];
+        }
+        long dataSize = Files.size(segment.data());
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.index())))) {
+            int records = (int) (Files.size(segment.index()) / 16);
+            long[] pairs = new long[records * 2];
+            int kept = 0;
+            for (int i = 0; i < records; i++) {
+                long millis = in.readLong();
+                long offset = in.readLong();
+                if (offset < dataSize) {
+                    pairs[kept++] = millis;
+                    pairs[kept++] = offset;
+                }
+            }
+            return kept == pairs.length ? pairs : Arrays.copyOf(pairs, kept);
+        }
+    }
+
+    /** Timestamp of the segment's first entry, or Long.MAX_VALUE while it has none. */
+    public static long firstMillis(Segment segment) throws IOException {
+        if (!Files.exists(segment.index()) || Files.size(segment.index()) < 16) {
+            return Long.MAX_VALUE;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(segment.index()))) {
+            return in.readLong();
+        }
+    }
+
+    /** Offsets, in file order, of the segment's entries about one employee. */
+    public static long[] readEmployeeOffsets(Segment segment, int employeeId) throws IOException {
+        if (!Files.exists(segment.employees())) {
+            return new long[0];
+        }
+        long dataSize = Files.size(segment.data());
+        long[] offsets = new long[16];
+        int found = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.employees()), BUFFER))) {
+            long records = Files.size(segment.employees()) / 12;
+            for (long i = 0; i < records; i++) {
+                int id = in.readInt();
+                long offset = in.readLong();
+                if (id == employeeId && offset < dataSize) {
+                    if (found == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, found * 2);
+                    }
+                    offsets[found++] = offset;
+                }
+            }
+        }
+        return Arrays.copyOf(offsets, found);
+    }
+
+    /**
+     * Reads a segment's lines from a byte offset, tracking where each one
+     * starts. A last line without its newline, cut short by a crash or
+     * still being written, is not returned.
+     */
+    public static class LineReader implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+        private byte[] line = new byte[256];
+        private long position;
+        private long read;
+
+        public LineReader(Segment segment, long offset) throws IOException {
+            this.channel = FileChannel.open(segment.data(), StandardOpenOption.READ);
+            seek(offset);
+        }
+
+        /** Offset of the line the next call to {@link #next} returns. */
+        public long position() {
+            return position;
+        }
+
+        public void seek(long offset) {
+            position = offset;
+            read = offset;
+            buffer.clear().flip();
+        }
+
+        public String next() throws IOException {
+            int length = 0;
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    buffer.clear();
+                    int n = channel.read(buffer, read);
+                    buffer.flip();
+                    if (n <= 0) {
+                        return null;
+                    }
+                    read += n;
+                }
+                byte b = buffer.get();
+                if (b == '\n') {
+                    position += length + 1;
+                    return new String(line, 0, length, StandardCharsets.UTF_8);
+                }
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = b;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private Segment segment(long firstSeq) {
+        String name = PREFIX + String.format("%016d", firstSeq);
+        return new Segment(firstSeq, dir.resolve(name + DATA), dir.resolve(name + INDEX), dir.resolve(name + EMPLOYEES));
+    }
+
+    private void rotate() throws IOException {
+        closeSegment();
+        Segment next = segment(nextSeq);
+        segments.add(next);
+        open(next);
+    }
+
+    private void open(Segment segment) throws IOException {
+        data = FileChannel.open(segment.data(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        index = FileChannel.open(segment.index(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        employees = FileChannel.open(segment.employees(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        data.position(data.size());
+        index.position(index.size());
+        employees.position(employees.size());
+        size = data.size();
+        entries = 0;
+        nextSeq = segment.firstSeq();
+    }
+
+    /**
+     * Reopens the last segment for appending. Anything after its last
+     * complete line is cut off, and the entries after the last index record
+     * are counted and indexed again, so a crash mid-write costs at most the
+     * entry being written.
+     */
+    private void recover(Segment segment) throws IOException {
+        long[] pairs = readIndex(segment);
+        int records = pairs.length / 2;
+        long from = records == 0 ? 0 : pairs[pairs.length - 1];
+        long counted = records == 0 ? 0 : (long) (records - 1) * INDEX_INTERVAL;
+
+        open(segment);
+        index.truncate((long) Math.max(0, records - 1) * 16);
+        index.position(index.size());
+        long keptEmployees = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.employees()), BUFFER))) {
+            long total = employees.size() / 12;
+            while (keptEmployees < total) {
+                in.readInt();
+                if (in.readLong() >= from) {
+                    break;
+                }
+                keptEmployees++;
+            }
+        }
+        employees.truncate(keptEmployees * 12);
+        employees.position(employees.size());
+
+        firstMillis = records == 0 ? 0 : pairs[0];
+        entries = counted;
+        nextSeq = segment.firstSeq() + counted;
+        long end = from;
+        try (LineReader lines = new LineReader(segment, from)) {
+            String text;
+            while ((text = lines.next()) != null) {
+                AuditLog.LogEntry entry = AuditLog.parse(text);
+                if (entries % INDEX_INTERVAL == 0) {
+                    index(entry == null ? firstMillis : entry.getEpochMillis(), end);
+                }
+                int employeeId = entry == null ? -1 : AuditLog.employeeOf(entry);
+                if (employeeId >= 0) {
+                    indexEmployee(employeeId, end);
+                }
+                entries++;
+                nextSeq++;
+                end = lines.position();
+            }
+        }
+        data.truncate(end);
+        data.position(end);
+        size = end;
+        flush(true);
+    }
+
+    private void drainAll() throws IOException {
+        drain(dataBuffer, data);
+        drain(indexBuffer, index);
+        drain(employeeBuffer, employees);
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        writeFully(channel, buffer);
+        buffer.clear();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -3,13 +3,21 @@ package diagnostic_services;
 import diagnostic_services.file_system.*;
 import diagnostic_services.iteration3.BiopsyMain;
 import diagnostic_services.iteration_2.It2Main;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.util.Scanner;
 
 
 public class DiagMain {
 	public static void main(String[] args) {
 		Scanner sc = new Scanner(System.in);
-		FilerSystem fs = new FilerSystem();
+
+		// -Ddiagnostic.metrics.export=<file> keeps a turnaround snapshot there, every 60s unless -Ddiagnostic.metrics.period says otherwise.
+		String export = System.getProperty("diagnostic.metrics.export");
+		if (export != null) {
+			TurnaroundMetrics.exportEvery(() -> DiagnosticStore.get().getTurnaroundMetrics(), Path.of(export),
+					Long.getLong("diagnostic.metrics.period", 60));
+		}
 
 		boolean running = true;
 		System.out.println();
@@ -17,6 +25,7 @@ public class DiagMain {
 		System.out.println();
 
 		while (running) {
+			FilerSystem fs = DiagnosticStore.get();
 			System.out.print(
 				"""
 				What would you like to do?
@@ -24,7 +33,8 @@ public class DiagMain {
 				2) Sample Manager
 				3) Pre-Hospital Care Reporter (PRC)
 				4) Biopsy Manager
-				5) Exit
+				5) Turnaround Metrics
+				6) Exit
 				>\s"""
 			);
 
@@ -48,7 +58,10 @@ public class DiagMain {
 							Select an option:
 							1) Display All Charts
 							2) Create Chart
-							3) Exit Chart System
+							3) Search Charts
+							4) My Charts
+							5) Charts by Date
+							6) Exit Chart System
 							>\s"""
 						);
 						in = sc.nextLine();
@@ -61,8 +74,34 @@ public class DiagMain {
 							case "2" -> {
 								fs.submitChart(userId, sc);
 							}
-							case "3" -> running = false;
+							case "3" -> {
+								System.out.print("Search notes and allergies (AND by default, OR between terms, * for prefix): ");
+								fs.displayChartSearch(sc.nextLine());
+							}
+							case "4" -> {
+								fs.displayChartsByProvider(userId);
+							}
+							case "5" -> {
+								System.out.print("From date (e.g. Nov 6, 2025), or enter for the last 72 hours: ");
+								String from = sc.nextLine();
+								if (from.isBlank()) {
+									LocalDate today = LocalDate.now();
+									fs.displayChartsIssuedBetween(today.minusDays(3), today);
+									break;
+								}
+								System.out.print("To date, or enter for today: ");
+								String to = sc.nextLine();
+								int fromDay = ChartDates.parse(from);
+								int toDay = to.isBlank() ? ChartDates.today() : ChartDates.parse(to);
+								if (fromDay == ChartDates.NONE || toDay == ChartDates.NONE) {
+									System.out.println("Invalid date.\n");
+								} else {
+									fs.displayChartsIssuedBetween(LocalDate.ofEpochDay(fromDay), LocalDate.ofEpochDay(toDay));
+								}
+							}
+							case "6" -> running = false;
 						}
+						fs.saveData();
 					}
 					case 2 -> {
 						int userId = askUserId(sc, fs);
@@ -71,7 +110,7 @@ public class DiagMain {
 							break;
 						}
 
-						It2Main.sampleManager(userId, fs, sc);
+						It2Main.sampleManager(userId, sc);
 					}
 					case 3 -> {
 
@@ -81,17 +120,21 @@ public class DiagMain {
 							break;
 						}
 
-						It2Main.pcrReporter(userId, fs, sc);
+						It2Main.pcrReporter(userId, sc);
 					}
 					case 4 -> {
 						BiopsyMain.main(sc);
 					}
 					case 5 -> {
+						fs.displayTurnaround();
+					}
+					case 6 -> {
 						running = false;
 					}
 				}
 			}
 		}
+		DiagnosticStore.close();
 	}
 
 	private static int askUserId(Scanner sc, FilerSystem fs) {
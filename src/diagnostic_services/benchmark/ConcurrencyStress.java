@@ -0,0 +1,119 @@
+package diagnostic_services.benchmark;
+
+import diagnostic_services.file_system.Biopsy;
+import diagnostic_services.file_system.Chart;
+import diagnostic_services.file_system.FilerSystem;
+import diagnostic_services.iteration_2.PCR;
+import diagnostic_services.iteration_2.Sample;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Has many clinician sessions file charts, samples, PCRs and biopsies against
+ * one FilerSystem at the same moment, then checks that every id was handed
+ * out once, every record can be read back, and the charts survive a save and
+ * reload. Exits with status 1 on any lost update or duplicate id.
+ *
+ * Usage: java -cp out diagnostic_services.benchmark.ConcurrencyStress [threads] [opsPerThread]
+ */
+public class ConcurrencyStress {
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 48;
+		int ops = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		int patients = 1000;
+
+		Path dir = Files.createTempDirectory("diag-stress");
+		new DataGenerator(patients, 2, 50).write(dir);
+		FilerSystem fs = new FilerSystem(dir.toString());
+
+		Set<Integer> chartIds = ConcurrentHashMap.newKeySet();
+		Set<Integer> sampleIds = ConcurrentHashMap.newKeySet();
+		Set<Integer> pcrIds = ConcurrentHashMap.newKeySet();
+		Set<Integer> biopsyIds = ConcurrentHashMap.newKeySet();
+		AtomicInteger failures = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		List<Thread> sessions = new ArrayList<>();
+		long began = System.nanoTime();
+		for (int t = 0; t < threads; t++) {
+			int session = t;
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+					for (int i = 0; i < ops; i++) {
+						int patientId = DataGenerator.PATIENT_BASE + (session * ops + i) % patients;
+						int doctorId = DataGenerator.DOCTOR_BASE + session % 50;
+
+						Chart chart = fs.createChart(doctorId, patientId, "Latex", "stress session " + session);
+						Sample sample = fs.createSample(patientId, "Blood", Sample.Priority.ROUTINE, List.of("Cholesterol"));
+						PCR pcr = fs.createPCR(DataGenerator.EMT_BASE + session % 50, DataGenerator.EMT_BASE + i % 50);
+						Biopsy biopsy = new Biopsy(Biopsy.Category.NEEDLE, fs.getDoctorById(doctorId), fs.getPatientById(patientId));
+						fs.save(biopsy);
+
+						if (chart == null || !chartIds.add(chart.getId())
+								|| sample == null || !sampleIds.add(sample.getId())
+								|| pcr == null || !pcrIds.add(pcr.getId())
+								|| !biopsyIds.add(biopsy.getId())) {
+							failures.incrementAndGet();
+						}
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}, "session-" + t);
+			thread.start();
+			sessions.add(thread);
+		}
+		start.countDown();
+		for (Thread thread : sessions) {
+			thread.join();
+		}
+		long elapsed = System.nanoTime() - began;
+		System.setOut(console);
+
+		int expected = threads * ops;
+		for (int id : sampleIds) {
+			if (fs.getSampleById(id) == null) {
+				failures.incrementAndGet();
+			}
+		}
+		for (int id : pcrIds) {
+			if (fs.getPCRById(id) == null) {
+				failures.incrementAndGet();
+			}
+		}
+		for (int id : biopsyIds) {
+			if (fs.getBiopsyById(id) == null) {
+				failures.incrementAndGet();
+			}
+		}
+		int searched = fs.searchChartIds("stress").length;
+
+		fs.saveData();
+		fs.close();
+		int reloaded = new FilerSystem(dir.toString()).searchChartIds("stress").length;
+
+		System.out.printf("%d sessions x %d ops in %.0f ms%n", threads, ops, elapsed / 1e6);
+		System.out.printf("charts %d, samples %d, PCRs %d, biopsies %d unique of %d each%n",
+				chartIds.size(), sampleIds.size(), pcrIds.size(), biopsyIds.size(), expected);
+		System.out.printf("charts found by search %d, after save and reload %d%n", searched, reloaded);
+
+		boolean ok = failures.get() == 0 && chartIds.size() == expected && sampleIds.size() == expected
+				&& pcrIds.size() == expected && biopsyIds.size() == expected
+				&& searched == expected && reloaded == expected;
+		System.out.println(ok ? "OK" : "FAILED (" + failures.get() + " bad operations)");
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+}
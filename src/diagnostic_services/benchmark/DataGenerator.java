@@ -0,0 +1,160 @@
+package diagnostic_services.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Writes a synthetic diagnostic dataset in the same layout as
+ * file_system/Data so the loaders can be measured at scale.
+ */
+public class DataGenerator {
+	private static final String[] FIRST = { "James", "Madam", "Fig", "Brok", "Segus", "Rossman", "Josh", "Tig" };
+	private static final String[] LAST = { "Lee", "Flie", "Au", "Nee", "Man", "Bobert", "Ua", "Ner" };
+	private static final String[] SPECIALTIES = { "RADIOLOGY", "SURGEON", "UROLOGY", "DERMATOLOGY" };
+	private static final String[] CATEGORIES = { "NEEDLE", "SURGICAL", "ENDOSCOPIC", "DERMATOLOGIC" };
+	private static final String[] STATUSES = { "PENDING", "IN_PROGRESS", "COMPLETED", "CANCELLED" };
+	private static final String[] SAMPLE_TYPES = { "Blood", "Urine", "Tissue", "Swab" };
+	private static final String[] MONTHS = { "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+
+	public static final int DOCTOR_BASE = 100_000;
+	public static final int NURSE_BASE = 200_000;
+	public static final int LAB_BASE = 300_000;
+	public static final int EMT_BASE = 400_000;
+	public static final int PATIENT_BASE = 1_000_000;
+
+	private final Random random = new Random(42);
+	private final int patients;
+	private final int chartsPerPatient;
+	private final int staff;
+
+	public DataGenerator(int patients, int chartsPerPatient, int staff) {
+		this.patients = patients;
+		this.chartsPerPatient = chartsPerPatient;
+		this.staff = staff;
+	}
+
+	/**
+	 * A dataset of roughly {@code records} records in total: each patient
+	 * brings four charts plus one sample, one PCR and one biopsy.
+	 */
+	public static DataGenerator ofRecords(int records) {
+		return new DataGenerator(Math.max(1, records / 8), 4, 500);
+	}
+
+	public int getPatients() {
+		return patients;
+	}
+
+	public void write(Path dir) throws IOException {
+		Files.createDirectories(dir);
+		writeStaff(dir.resolve("doctors.json"), DOCTOR_BASE, true);
+		writeStaff(dir.resolve("nurses.json"), NURSE_BASE, false);
+		writeStaff(dir.resolve("labtechs.json"), LAB_BASE, false);
+		writeStaff(dir.resolve("emts.json"), EMT_BASE, false);
+		writePatients(dir.resolve("patients.json"));
+		writeSamples(dir.resolve("samples.json"));
+		writePCRs(dir.resolve("pcrs.json"));
+		writeBiopsies(dir.resolve("biopsies.json"));
+	}
+
+	private void writeStaff(Path path, int base, boolean doctors) throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(path)) {
+			out.write("[\n");
+			for (int i = 0; i < staff; i++) {
+				out.write("\t{\n");
+				out.write("\t\t\"firstName\": \"" + pick(FIRST) + "\",\n");
+				out.write("\t\t\"lastName\": \"" + pick(LAST) + "\",\n");
+				out.write("\t\t\"id\": " + (base + i) + (doctors ? ",\n" : "\n"));
+				if (doctors) {
+					out.write("\t\t\"specialty\": \"" + SPECIALTIES[i % SPECIALTIES.length] + "\"\n");
+				}
+				out.write(i + 1 < staff ? "\t},\n" : "\t}\n");
+			}
+			out.write("]");
+		}
+	}
+
+	private void writePatients(Path path) throws IOException {
+		int chartId = 1;
+		try (BufferedWriter out = Files.newBufferedWriter(path)) {
+			out.write("[\n");
+			for (int i = 0; i < patients; i++) {
+				int patientId = PATIENT_BASE + i;
+				out.write("\t{\n");
+				out.write("\t\t\"firstName\": \"" + pick(FIRST) + "\",\n");
+				out.write("\t\t\"lastName\": \"" + pick(LAST) + "\",\n");
+				out.write("\t\t\"id\": " + patientId + ",\n");
+				out.write("\t\t\"prevCharts\": [\n");
+				for (int c = 0; c < chartsPerPatient; c++) {
+					out.write("\t\t\t{\n");
+					out.write("\t\t\t\t\"patientId\": " + patientId + ",\n");
+					out.write("\t\t\t\t\"chartId\": " + chartId++ + ",\n");
+					out.write("\t\t\t\t\"userIdIss\": " + (DOCTOR_BASE + random.nextInt(staff)) + ",\n");
+					out.write("\t\t\t\t\"dateIss\": \"" + pick(MONTHS) + " " + (1 + random.nextInt(28)) + ", " + (2020 + random.nextInt(6)) + "\",\n");
+					out.write("\t\t\t\t\"others\": [" + (NURSE_BASE + random.nextInt(staff)) + ", " + (DOCTOR_BASE + random.nextInt(staff)) + "],\n");
+					out.write("\t\t\t\t\"allergies\": \"" + (random.nextInt(10) == 0 ? "Penicillin" : "None") + "\",\n");
+					out.write("\t\t\t\t\"additionalNotes\": \"Follow up in " + random.nextInt(30) + " days.\"\n");
+					out.write(c + 1 < chartsPerPatient ? "\t\t\t},\n" : "\t\t\t}\n");
+				}
+				out.write("\t\t]\n");
+				out.write(i + 1 < patients ? "\t},\n" : "\t}\n");
+			}
+			out.write("]");
+		}
+	}
+
+	private void writeSamples(Path path) throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(path)) {
+			out.write("[\n");
+			for (int i = 0; i < patients; i++) {
+				out.write("\t{\n");
+				out.write("\t\t\"id\": " + (i + 1) + ",\n");
+				out.write("\t\t\"sampleType\": \"" + pick(SAMPLE_TYPES) + "\",\n");
+				out.write("\t\t\"status\": \"" + pick(STATUSES) + "\",\n");
+				out.write("\t\t\"patient\": " + (PATIENT_BASE + random.nextInt(patients)) + ",\n");
+				out.write("\t\t\"results\": \"Cholesterol: " + (150 + random.nextInt(100)) + ", Additional Notes: NULL\"\n");
+				out.write(i + 1 < patients ? "\t},\n" : "\t}\n");
+			}
+			out.write("]");
+		}
+	}
+
+	private void writePCRs(Path path) throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(path)) {
+			out.write("[\n");
+			for (int i = 0; i < patients; i++) {
+				out.write("\t{\n");
+				out.write("\t\t\"id\": " + (i + 1) + ",\n");
+				out.write("\t\t\"emts\": [" + (EMT_BASE + random.nextInt(staff)) + ", " + (EMT_BASE + random.nextInt(staff)) + "],\n");
+				out.write("\t\t\"patient\": " + (PATIENT_BASE + random.nextInt(patients)) + ",\n");
+				out.write("\t\t\"notes\": \"Transported, vitals stable.\"\n");
+				out.write(i + 1 < patients ? "\t},\n" : "\t}\n");
+			}
+			out.write("]");
+		}
+	}
+
+	private void writeBiopsies(Path path) throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(path)) {
+			out.write("[\n");
+			for (int i = 0; i < patients; i++) {
+				out.write("{\n");
+				out.write("\"type\": \"" + pick(CATEGORIES) + "\",\n");
+				out.write("\"doctor\": " + (DOCTOR_BASE + random.nextInt(staff)) + ",\n");
+				out.write("\"patient\": " + (PATIENT_BASE + random.nextInt(patients)) + ",\n");
+				out.write("\"status\": \"" + pick(STATUSES) + "\",\n");
+				out.write("\"notes\": \"\",\n");
+				out.write("\"id\": " + (i + 1) + "\n");
+				out.write(i + 1 < patients ? "},\n" : "}\n");
+			}
+			out.write("]");
+		}
+	}
+
+	private String pick(String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+}
@@ -0,0 +1,227 @@
+package diagnostic_services.benchmark;
+
+import diagnostic_services.file_system.Biopsy;
+import diagnostic_services.file_system.FilerSystem;
+import diagnostic_services.file_system.Status;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmarks for the FilerSystem operations clinicians hit most, run against
+ * a generated dataset. Each benchmark is warmed up, then measured over
+ * several iterations of a fixed batch. It reports the mean time per
+ * operation and the bytes allocated per operation across all threads, the
+ * same figures JMH gives with -prof gc. Anything the operations print is
+ * discarded while they run.
+ *
+ * Usage: java -cp out diagnostic_services.benchmark.FilerSystemBenchmark [records] [name filter]
+ */
+public class FilerSystemBenchmark {
+	private static final int WARMUP_ITERATIONS = 3;
+	private static final int MEASURED_ITERATIONS = 5;
+
+	/** One benchmark; {@link #setup()} runs untimed before every iteration. */
+	abstract static class Benchmark {
+		final String name;
+		final int batch;
+
+		Benchmark(String name, int batch) {
+			this.name = name;
+			this.batch = batch;
+		}
+
+		void setup() throws Exception {}
+
+		abstract void run(int i) throws Exception;
+	}
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	public static void main(String[] args) throws Exception {
+		int records = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		String filter = args.length > 1 ? args[1] : "";
+
+		Path dir = Files.createTempDirectory("diag-bench");
+		DataGenerator generator = DataGenerator.ofRecords(records);
+		generator.write(dir);
+		int patients = generator.getPatients();
+		System.out.printf("Dataset: %,d records (%,d patients) in %s%n%n", records, patients, dir);
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		console.printf("%-24s %6s %14s %12s %16s%n", "Benchmark", "Batch", "ns/op", "stddev", "alloc B/op");
+		try {
+			for (Benchmark benchmark : benchmarks(dir.toString(), patients)) {
+				if (benchmark.name.contains(filter)) {
+					console.println(measure(benchmark));
+				}
+			}
+		} finally {
+			System.setOut(console);
+		}
+	}
+
+	static List<Benchmark> benchmarks(String dir, int patients) {
+		List<Benchmark> list = new ArrayList<>();
+		Random random = new Random(7);
+
+		list.add(new Benchmark("load.json", 1) {
+			@Override
+			void setup() {
+				System.setProperty("diagnostic.snapshot", "false");
+			}
+
+			@Override
+			void run(int i) {
+				new FilerSystem(dir).close();
+			}
+		});
+		list.add(new Benchmark("load.snapshot", 1) {
+			@Override
+			void setup() throws Exception {
+				System.setProperty("diagnostic.snapshot", "true");
+				Path snapshot = Path.of(dir, "diagnostic.snapshot");
+				if (!Files.exists(snapshot)) {
+					new FilerSystem(dir).close();
+					while (!Files.exists(snapshot)) {
+						Thread.sleep(50);
+					}
+				}
+			}
+
+			@Override
+			void run(int i) {
+				new FilerSystem(dir).close();
+			}
+		});
+
+		FilerSystem fs = new FilerSystem(dir);
+		int doctor = DataGenerator.DOCTOR_BASE;
+
+		list.add(new Benchmark("biopsy.save", 200) {
+			@Override
+			void run(int i) {
+				fs.save(new Biopsy(Biopsy.Category.NEEDLE, fs.getDoctorById(doctor),
+						fs.getPatientById(DataGenerator.PATIENT_BASE + random.nextInt(patients))));
+			}
+		});
+		list.add(new Benchmark("biopsy.delete", 200) {
+			final int[] ids = new int[batch];
+
+			@Override
+			void setup() {
+				for (int n = 0; n < batch; n++) {
+					Biopsy biopsy = new Biopsy(Biopsy.Category.NEEDLE, fs.getDoctorById(doctor),
+							fs.getPatientById(DataGenerator.PATIENT_BASE + random.nextInt(patients)));
+					fs.save(biopsy);
+					ids[n] = biopsy.getId();
+				}
+			}
+
+			@Override
+			void run(int i) {
+				fs.deleteBiopsy(ids[i]);
+			}
+		});
+		list.add(new Benchmark("biopsy.worklistPage", 1000) {
+			@Override
+			void run(int i) {
+				fs.displayBiopsiesByUserId(doctor + random.nextInt(4), 0, 20);
+			}
+		});
+		list.add(new Benchmark("biopsy.countPending", 10_000) {
+			@Override
+			void run(int i) {
+				fs.countBiopsies(Biopsy.Category.NEEDLE, Status.PENDING);
+			}
+		});
+		list.add(new Benchmark("person.isProvider", 100_000) {
+			@Override
+			void run(int i) {
+				fs.isHealthCareProvider(DataGenerator.NURSE_BASE + (i & 1023));
+			}
+		});
+		list.add(new Benchmark("chart.history", 1000) {
+			@Override
+			void run(int i) {
+				fs.getChartsByPatientId(DataGenerator.PATIENT_BASE + random.nextInt(patients));
+			}
+		});
+		list.add(new Benchmark("chart.search", 1000) {
+			@Override
+			void setup() {
+				fs.searchChartIds("");
+			}
+
+			@Override
+			void run(int i) {
+				fs.searchChartIds("penicillin");
+			}
+		});
+		list.add(new Benchmark("chart.caseload", 100) {
+			@Override
+			void setup() {
+				fs.getChartsByProviderId(doctor, true);
+			}
+
+			@Override
+			void run(int i) {
+				fs.getChartsByProviderId(doctor + random.nextInt(500), true);
+			}
+		});
+		return list;
+	}
+
+	static String measure(Benchmark benchmark) throws Exception {
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			iteration(benchmark);
+		}
+		double[] nanosPerOp = new double[MEASURED_ITERATIONS];
+		long allocated = 0;
+		for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+			long[] result = iteration(benchmark);
+			nanosPerOp[i] = (double) result[0] / benchmark.batch;
+			allocated += result[1];
+		}
+
+		double mean = 0;
+		for (double value : nanosPerOp) {
+			mean += value / nanosPerOp.length;
+		}
+		double variance = 0;
+		for (double value : nanosPerOp) {
+			variance += (value - mean) * (value - mean) / (nanosPerOp.length - 1);
+		}
+		return String.format("%-24s %6d %14.1f %12.1f %16.1f",
+				benchmark.name, benchmark.batch, mean, Math.sqrt(variance),
+				(double) allocated / (MEASURED_ITERATIONS * (long) benchmark.batch));
+	}
+
+	/** Runs one batch and returns its elapsed nanoseconds and allocated bytes. */
+	private static long[] iteration(Benchmark benchmark) throws Exception {
+		benchmark.setup();
+		long before = allocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < benchmark.batch; i++) {
+			benchmark.run(i);
+		}
+		long elapsed = System.nanoTime() - start;
+		return new long[] { elapsed, allocatedBytes() - before };
+	}
+
+	/** Loading and compaction run on other threads too, so allocation is summed over every live thread. */
+	private static long allocatedBytes() {
+		long total = 0;
+		for (long bytes : THREADS.getThreadAllocatedBytes(THREADS.getAllThreadIds())) {
+			total += Math.max(bytes, 0);
+		}
+		return total;
+	}
+}
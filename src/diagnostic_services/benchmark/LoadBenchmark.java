@@ -0,0 +1,186 @@
+package diagnostic_services.benchmark;
+
+import diagnostic_services.file_system.FilerSystem;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Scanner;
+
+/**
+ * Compares the old line-scanning loader against the JsonReader based one, and
+ * both against a cold start from the binary snapshot, on a generated dataset.
+ *
+ * Usage: java -cp out diagnostic_services.benchmark.LoadBenchmark [patients] [chartsPerPatient]
+ */
+public class LoadBenchmark {
+	private static final String[] FILES = {
+		"doctors.json", "nurses.json", "labtechs.json", "emts.json",
+		"patients.json", "samples.json", "pcrs.json", "biopsies.json"
+	};
+
+	public static void main(String[] args) throws Exception {
+		int patients = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+		int chartsPerPatient = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int iterations = 5;
+
+		Path dir = Files.createTempDirectory("diag-bench");
+		new DataGenerator(patients, chartsPerPatient, 500).write(dir);
+
+		long bytes = 0;
+		for (String name : FILES) {
+			bytes += Files.size(dir.resolve(name));
+		}
+		System.out.printf("Dataset: %d patients, %d charts, %.1f MB in %s%n",
+				patients, patients * chartsPerPatient, bytes / 1e6, dir);
+
+		System.setProperty("diagnostic.snapshot", "false");
+		measure("legacy", iterations, bytes, () -> LegacyLoader.load(dir));
+		measure("streaming", iterations, bytes, () -> new FilerSystem(dir.toString()));
+
+		System.setProperty("diagnostic.snapshot", "true");
+		new FilerSystem(dir.toString());
+		Path snapshot = dir.resolve("diagnostic.snapshot");
+		while (!Files.exists(snapshot)) {
+			Thread.sleep(50);
+		}
+		System.out.printf("Snapshot: %.1f MB%n", Files.size(snapshot) / 1e6);
+		measure("snapshot", iterations, bytes, () -> new FilerSystem(dir.toString()));
+	}
+
+	static void measure(String label, int iterations, long bytes, Runnable task) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+		task.run();
+		long best = Long.MAX_VALUE;
+		long allocated = 0;
+		for (int i = 0; i < iterations; i++) {
+			long before = allocatedBytes(threads);
+			long start = System.nanoTime();
+			task.run();
+			best = Math.min(best, System.nanoTime() - start);
+			allocated = allocatedBytes(threads) - before;
+		}
+
+		System.out.printf("%-10s best %8.1f ms  %7.1f MB/s  %8.1f MB allocated%n",
+				label, best / 1e6, bytes / 1e6 / (best / 1e9), allocated / 1e6);
+	}
+
+	/** Loading runs on pool threads too, so allocation is summed over every live thread. */
+	private static long allocatedBytes(com.sun.management.ThreadMXBean threads) {
+		long total = 0;
+		for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+			total += Math.max(bytes, 0);
+		}
+		return total;
+	}
+
+	/** The Scanner/split/cleanVal loader FilerSystem used before JsonReader, kept for comparison. */
+	static class LegacyLoader {
+		final LinkedHashMap<Integer, String[]> people = new LinkedHashMap<>();
+		final LinkedHashMap<Integer, String[]> charts = new LinkedHashMap<>();
+		final LinkedHashMap<Integer, String[]> records = new LinkedHashMap<>();
+
+		static LegacyLoader load(Path dir) {
+			LegacyLoader loader = new LegacyLoader();
+			for (String name : FILES) {
+				try (Scanner sc = new Scanner(new File(dir.resolve(name).toString()))) {
+					if (name.equals("patients.json")) {
+						loader.parseCharts(sc);
+					} else {
+						loader.parseRecords(sc, name.startsWith("doctors") || name.startsWith("nurses")
+								|| name.startsWith("labtechs") || name.startsWith("emts"));
+					}
+				} catch (FileNotFoundException e) {
+					e.printStackTrace();
+				}
+			}
+			return loader;
+		}
+
+		private String cleanVal(String str) {
+			return str.strip()
+				.replace(",", "")
+				.replace("\"", "")
+				.replace("[", "")
+				.replace("]", "");
+		}
+
+		private void parseCharts(Scanner sc) {
+			String firstName = "";
+			String lastName = "";
+			int id = 0;
+			while (sc.hasNextLine()) {
+				String line = sc.nextLine();
+				if (line.contains("firstName")) {
+					firstName = cleanVal(line.split(":")[1]);
+				}
+				if (line.contains("lastName")) {
+					lastName = cleanVal(line.split(":")[1]);
+				}
+				if (line.contains("\"id\"")) {
+					id = Integer.parseInt(cleanVal(line.split(":")[1]));
+				}
+				if (line.contains("prevCharts")) {
+					String[] chart = new String[6];
+					while (sc.hasNextLine()) {
+						line = sc.nextLine();
+						if (line.contains("}")) {
+							charts.put(Integer.parseInt(chart[0]), chart);
+						}
+						if (line.contains("{")) {
+							chart = new String[6];
+							line = sc.nextLine();
+						}
+						if (line.contains("]") && !line.contains("[")) {
+							break;
+						}
+						if (line.contains("chartId")) {
+							chart[0] = line.split(":")[1].strip().replace(",", "");
+						} else if (line.contains("userIdIss")) {
+							chart[1] = cleanVal(line.split(":")[1]);
+						} else if (line.contains("dateIss")) {
+							chart[2] = line.split(":")[1];
+						} else if (line.contains("others")) {
+							String[] split = line.split(":")[1].split(",");
+							for (String other : split) {
+								String otherId = cleanVal(other);
+								if (!otherId.isEmpty()) {
+									chart[3] = otherId;
+								}
+							}
+						} else if (line.contains("allergies")) {
+							chart[4] = line.split(":")[1];
+						} else if (line.contains("additionalNotes")) {
+							chart[5] = line.split(":")[1];
+						}
+					}
+				}
+				if (line.contains("}")) {
+					people.put(id, new String[] { firstName, lastName });
+				}
+			}
+		}
+
+		private void parseRecords(Scanner sc, boolean staff) {
+			String[] record = new String[8];
+			int field = 0;
+			while (sc.hasNextLine()) {
+				String line = sc.nextLine();
+				if (line.contains(":")) {
+					String[] split = line.split(":");
+					if (field < record.length) {
+						record[field++] = cleanVal(split[split.length - 1]);
+					}
+				}
+				if (line.contains("}")) {
+					(staff ? people : records).put((staff ? people : records).size() + 1, record);
+					record = new String[8];
+					field = 0;
+				}
+			}
+		}
+	}
+}
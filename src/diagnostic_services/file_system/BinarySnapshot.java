@@ -0,0 +1,426 @@
+package diagnostic_services.file_system;
+
+import diagnostic_services.iteration_2.Sample;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import roles.*;
+
+/**
+ * Compact binary copy of everything {@link DataLoader} reads from the JSON
+ * files, kept next to them as diagnostic.snapshot. It is only used while it
+ * is newer than every JSON file and journal in the directory; the JSON stays
+ * the format people and other tools edit.
+ *
+ * Layout: magic, version, offset of the string table, then one section per
+ * entity (a count followed by length-prefixed records of ints and string
+ * table indexes), then the string table itself. Reading maps the file in
+ * windows, so files larger than one mapping are fine.
+ */
+class BinarySnapshot {
+	static final String FILE_NAME = "diagnostic.snapshot";
+
+	private static final int MAGIC = 0x44494147; // "DIAG"
+	private static final int VERSION = 7;
+	private static final int HEADER = 16;
+
+	static boolean isEnabled() {
+		return !"false".equalsIgnoreCase(System.getProperty("diagnostic.snapshot"));
+	}
+
+	/** True when the snapshot exists and no JSON file or journal is newer. */
+	static boolean isFresh(Path dir) {
+		Path snapshot = dir.resolve(FILE_NAME);
+		try {
+			if (!Files.exists(snapshot)) {
+				return false;
+			}
+			long stamp = Files.getLastModifiedTime(snapshot).toMillis();
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.{json,journal,old}")) {
+				for (Path file : files) {
+					if (Files.getLastModifiedTime(file).toMillis() >= stamp) {
+						return false;
+					}
+				}
+			}
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the snapshot stamped with {@code readAt}, the time the data was
+	 * read, so a JSON file saved while this runs still counts as newer.
+	 */
+	static void write(Path dir, DataLoader data, long readAt) throws IOException {
+		Path target = dir.resolve(FILE_NAME);
+		Path temp = dir.resolve(FILE_NAME + ".tmp");
+		LinkedHashMap<String, Integer> strings = new LinkedHashMap<>();
+
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(0);
+
+			RecordBuffer record = new RecordBuffer(strings);
+
+			out.writeInt(data.doctors.size());
+			for (Doctor doctor : data.doctors) {
+				record.person(doctor);
+				record.writeInt(doctor.getSpecialty() == null ? -1 : doctor.getSpecialty().ordinal());
+				record.flushTo(out);
+			}
+			for (List<? extends Person> people : List.of(data.nurses, data.labTechs, data.emts)) {
+				out.writeInt(people.size());
+				for (Person person : people) {
+					record.person(person);
+					record.flushTo(out);
+				}
+			}
+
+			out.writeInt(data.patients.size());
+			for (DataLoader.RawPatient patient : data.patients) {
+				record.person(patient.patient());
+				record.writeLong(patient.chartsAt());
+				record.writeInt(patient.chartCount());
+				record.flushTo(out);
+			}
+
+			out.writeInt(data.journaledCharts.size());
+			for (DataLoader.RawChart chart : data.journaledCharts) {
+				record.writeInt(chart.patientId());
+				record.writeInt(chart.chartId());
+				record.writeInt(chart.userId());
+				record.writeInt(chart.issued());
+				record.string(chart.unreadDate());
+				record.writeInt(chart.others().length);
+				for (int other : chart.others()) {
+					record.writeInt(other);
+				}
+				record.string(chart.allergies());
+				record.string(chart.notes());
+				record.flushTo(out);
+			}
+
+			out.writeInt(data.samples.size());
+			for (DataLoader.RawSample sample : data.samples) {
+				record.writeInt(sample.id());
+				record.string(sample.sampleType());
+				record.writeInt(sample.status().ordinal());
+				record.writeInt(sample.priority().ordinal());
+				record.writeInt(sample.patientId());
+				record.writeInt(sample.results().size());
+				for (Map.Entry<String, String> result : sample.results().entrySet()) {
+					record.string(result.getKey());
+					record.string(result.getValue());
+				}
+				record.times(sample.statusTimes());
+				record.writeInt(sample.claimedBy());
+				record.flushTo(out);
+			}
+
+			out.writeInt(data.pcrs.size());
+			for (DataLoader.RawPCR pcr : data.pcrs) {
+				record.writeInt(pcr.id());
+				record.writeInt(pcr.patientId());
+				record.writeInt(pcr.emtId1());
+				record.writeInt(pcr.emtId2());
+				record.string(pcr.notes());
+				record.flushTo(out);
+			}
+
+			out.writeInt(data.biopsies.size());
+			for (DataLoader.RawBiopsy biopsy : data.biopsies) {
+				record.writeInt(biopsy.id());
+				record.writeInt(biopsy.type() == null ? -1 : biopsy.type().ordinal());
+				record.writeInt(biopsy.doctorId());
+				record.writeInt(biopsy.patientId());
+				record.writeInt(biopsy.status().ordinal());
+				record.string(biopsy.notes());
+				record.times(biopsy.statusTimes());
+				record.flushTo(out);
+			}
+			out.writeInt(data.lastBiopsyId);
+			out.writeInt(data.lastChartId);
+
+			out.flush();
+			long tableOffset = channel.position();
+			out.writeInt(strings.size());
+			for (String s : strings.keySet()) {
+				byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			out.flush();
+
+			ByteBuffer offset = ByteBuffer.allocate(8).putLong(0, tableOffset);
+			channel.write(offset, 8);
+			channel.force(true);
+		}
+		Files.setLastModifiedTime(temp, FileTime.fromMillis(readAt));
+		Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/** Returns null for a snapshot written by another version, which the next JSON load replaces. */
+	static DataLoader read(Path dir) throws IOException {
+		try (FileChannel channel = FileChannel.open(dir.resolve(FILE_NAME), StandardOpenOption.READ)) {
+			Input in = new Input(channel);
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			long tableOffset = in.readLong();
+
+			Input table = new Input(channel);
+			table.seek(tableOffset);
+			String[] strings = new String[table.readInt()];
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = table.readString();
+			}
+			in.strings = strings;
+
+			Doctor.Specialty[] specialties = Doctor.Specialty.values();
+			Status[] statuses = Status.values();
+			Sample.Priority[] priorities = Sample.Priority.values();
+			Biopsy.Category[] categories = Biopsy.Category.values();
+			DataLoader data = new DataLoader();
+
+			data.doctors = new ArrayList<>();
+			for (int n = in.beginSection(); n > 0; n--) {
+				in.beginRecord();
+				int id = in.readInt();
+				String first = in.string();
+				String last = in.string();
+				int specialty = in.readInt();
+				data.doctors.add(new Doctor(first, last, id, specialty < 0 ? null : specialties[specialty]));
+			}
+			data.nurses = new ArrayList<>();
+			for (int n = in.beginSection(); n > 0; n--) {
+				in.beginRecord();
+				int id = in.readInt();
+				data.nurses.add(new Nurse(in.string(), in.string(), id));
+			}
+			data.labTechs = new ArrayList<>();
+			for (int n = in.beginSection(); n > 0; n--) {
+				in.beginRecord();
+				int id = in.readInt();
+				data.labTechs.add(new LabTech(in.string(), in.string(), id));
+			}
+			data.emts = new ArrayList<>();
+			for (int n = in.beginSection(); n > 0; n--) {
+				in.beginRecord();
+				int id = in.readInt();
+				data.emts.add(new EMT(in.string(), in.string(), id));
+			}
+
+			data.patients = new ArrayList<>();
+			for (int n = in.beginSection(); n > 0; n--) {
+				in.beginRecord();
+				int id = in.readInt();
+				Patient patient = new Patient(in.string(), in.string(), id);
+				data.patients.add(new DataLoader.RawPatient(patient, in.readLong(), in.readInt()));
+			}
+
+			data.journaledCharts = new ArrayList<>();
+			for (int n = in.beginSection(); n > 0; n--) {
+				in.beginRecord();
+				int patientId = in.readInt();
+				int chartId = in.readInt();
+				int userId = in.readInt();
+				int issued = in.readInt();
+				String unreadDate = in.string();
+				int[] others = new int[in.readInt()];
+				for (int i = 0; i < others.length; i++) {
+					others[i] = in.readInt();
+				}
+				data.journaledCharts.add(new DataLoader.RawChart(patientId, chartId, userId, issued, unreadDate, others, in.string(), in.string()));
+			}
+
+			data.samples = new ArrayList<>();
+			for (int n = in.beginSection(); n > 0; n--) {
+				in.beginRecord();
+				int id = in.readInt();
+				String sampleType = in.string();
+				Status status = statuses[in.readInt()];
+				Sample.Priority priority = priorities[in.readInt()];
+				int patientId = in.readInt();
+				LinkedHashMap<String, String> results = new LinkedHashMap<>();
+				for (int r = in.readInt(); r > 0; r--) {
+					results.put(in.string(), in.string());
+				}
+				data.samples.add(new DataLoader.RawSample(id, sampleType, status, priority, patientId, results, in.readTimes(), in.readInt()));
+			}
+
+			data.pcrs = new ArrayList<>();
+			for (int n = in.beginSection(); n > 0; n--) {
+				in.beginRecord();
+				data.pcrs.add(new DataLoader.RawPCR(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.string()));
+			}
+
+			data.biopsies = new ArrayList<>();
+			for (int n = in.beginSection(); n > 0; n--) {
+				in.beginRecord();
+				int id = in.readInt();
+				int category = in.readInt();
+				Biopsy.Category type = category < 0 ? null : categories[category];
+				int doctorId = in.readInt();
+				int patientId = in.readInt();
+				Status status = statuses[in.readInt()];
+				String notes = in.string();
+				data.biopsies.add(new DataLoader.RawBiopsy(id, type, doctorId, patientId, status, notes, in.readTimes()));
+			}
+			data.lastBiopsyId = in.readInt();
+			data.lastChartId = in.readInt();
+			return data;
+		}
+	}
+
+	/** Collects one record so its length can be written in front of it. */
+	private static final class RecordBuffer {
+		private final LinkedHashMap<String, Integer> strings;
+		private ByteBuffer buf = ByteBuffer.allocate(256);
+
+		RecordBuffer(LinkedHashMap<String, Integer> strings) {
+			this.strings = strings;
+		}
+
+		void person(Person person) {
+			writeInt(person.getId());
+			string(person.getFirstName());
+			string(person.getLastName());
+		}
+
+		void writeInt(int value) {
+			if (buf.remaining() < 4) {
+				ByteBuffer grown = ByteBuffer.allocate(buf.capacity() * 2);
+				buf.flip();
+				grown.put(buf);
+				buf = grown;
+			}
+			buf.putInt(value);
+		}
+
+		void writeLong(long value) {
+			writeInt((int) (value >>> 32));
+			writeInt((int) value);
+		}
+
+		void times(long[] times) {
+			writeInt(times.length);
+			for (long time : times) {
+				writeLong(time);
+			}
+		}
+
+		void string(String value) {
+			if (value == null) {
+				writeInt(-1);
+				return;
+			}
+			Integer index = strings.get(value);
+			if (index == null) {
+				index = strings.size();
+				strings.put(value, index);
+			}
+			writeInt(index);
+		}
+
+		void flushTo(DataOutputStream out) throws IOException {
+			out.writeInt(buf.position());
+			out.write(buf.array(), 0, buf.position());
+			buf.clear();
+		}
+	}
+
+	/** Sequential reader over a file mapped one window at a time. */
+	private static final class Input {
+		private static final long WINDOW = 256L * 1024 * 1024;
+
+		private final FileChannel channel;
+		private final long size;
+		private ByteBuffer window = ByteBuffer.allocate(0);
+		private long windowStart = 0;
+		private String[] strings;
+
+		Input(FileChannel channel) throws IOException {
+			this.channel = channel;
+			this.size = channel.size();
+		}
+
+		void seek(long position) throws IOException {
+			map(position);
+		}
+
+		int beginSection() throws IOException {
+			return readInt();
+		}
+
+		/** Makes sure the whole record behind the length prefix is mapped. */
+		void beginRecord() throws IOException {
+			int length = readInt();
+			ensure(length);
+		}
+
+		int readInt() throws IOException {
+			ensure(4);
+			return window.getInt();
+		}
+
+		long readLong() throws IOException {
+			ensure(8);
+			return window.getLong();
+		}
+
+		long[] readTimes() throws IOException {
+			long[] times = new long[readInt()];
+			for (int i = 0; i < times.length; i++) {
+				times[i] = readLong();
+			}
+			return times;
+		}
+
+		String string() {
+			int index = window.getInt();
+			return index < 0 ? null : strings[index];
+		}
+
+		String readString() throws IOException {
+			int length = readInt();
+			ensure(length);
+			byte[] bytes = new byte[length];
+			window.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		private void ensure(int bytes) throws IOException {
+			if (window.remaining() < bytes) {
+				map(windowStart + window.position());
+				if (window.remaining() < bytes) {
+					throw new IOException("Snapshot is truncated");
+				}
+			}
+		}
+
+		private void map(long position) throws IOException {
+			long length = Math.min(WINDOW, size - position);
+			window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+			windowStart = position;
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package diagnostic_services.file_system;
 
+import java.util.concurrent.atomic.AtomicBoolean;
 import roles.*;
 
 public class Biopsy {
@@ -7,14 +8,17 @@ public class Biopsy {
   private final Doctor doctor;
   private final Patient patient;
   private Status status;
+  private final StatusTimes statusTimes = new StatusTimes();
   private String notes = "";
   private int id = 0;
+  private final AtomicBoolean dirty = new AtomicBoolean(true);
 
   public Biopsy(Category type, Doctor doctor, Patient patient, Status status, int id) {
     this.type = type;
     this.doctor = doctor;
     this.patient = patient;
     this.status = status;
+    this.statusTimes.record(status);
     this.id = id;
   }
 
@@ -23,14 +27,18 @@ public class Biopsy {
     this.doctor = doctor;
     this.patient = patient;
     this.status = Status.PENDING;
+    this.statusTimes.record(Status.PENDING);
   }
 
   public void setStatus(Status status) {
     this.status = status;
+    statusTimes.record(status);
+    dirty.set(true);
   }
 
   public void setId(int id) {
     this.id = id;
+    dirty.set(true);
   }
 
   public int getId() {
@@ -41,12 +49,18 @@ public class Biopsy {
     return status;
   }
 
+  /** When the biopsy first reached each status. */
+  public StatusTimes getStatusTimes() {
+    return statusTimes;
+  }
+
   public String getNotes() {
     return notes;
   }
 
   public void setNotes(String notes) {
     this.notes = notes;
+    dirty.set(true);
   }
 
   public void addNotes(String notes) {
@@ -55,6 +69,17 @@ public class Biopsy {
     } else {
       this.notes += " " + notes;
     }
+    dirty.set(true);
+  }
+
+  /** True if the biopsy changed since it was last written. */
+  public boolean isDirty() {
+    return dirty.get();
+  }
+
+  /** Clears the flag, returning whether it was set; call before writing the current state out. */
+  public boolean clearDirty() {
+    return dirty.getAndSet(false);
   }
 
   @Override
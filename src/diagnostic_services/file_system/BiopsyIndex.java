@@ -0,0 +1,103 @@
+package diagnostic_services.file_system;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Biopsies bucketed by category, then by status, each bucket ordered by id.
+ * A specialist's worklist is read straight out of their category's buckets,
+ * and pages continue from the last id seen rather than skipping from the start.
+ * All methods are synchronized; pages are copies.
+ */
+public class BiopsyIndex {
+	private final EnumMap<Biopsy.Category, EnumMap<Status, TreeMap<Integer, Biopsy>>> buckets = new EnumMap<>(Biopsy.Category.class);
+	private final HashMap<Integer, Status> filedUnder = new HashMap<>();
+
+	public BiopsyIndex() {
+		for (Biopsy.Category category : Biopsy.Category.values()) {
+			EnumMap<Status, TreeMap<Integer, Biopsy>> byStatus = new EnumMap<>(Status.class);
+			for (Status status : Status.values()) {
+				byStatus.put(status, new TreeMap<>());
+			}
+			buckets.put(category, byStatus);
+		}
+	}
+
+	/**
+	 * Files a new biopsy or moves an existing one to the bucket for its current
+	 * status. One without a category or status is filed under no bucket.
+	 */
+	public synchronized void update(Biopsy biopsy) {
+		Status status = biopsy.getType() == null ? null : biopsy.getStatus();
+		Status previous = status == null ? filedUnder.remove(biopsy.getId()) : filedUnder.put(biopsy.getId(), status);
+		if (previous != null && previous != status) {
+			buckets.get(biopsy.getType()).get(previous).remove(biopsy.getId());
+		}
+		if (status != null) {
+			buckets.get(biopsy.getType()).get(status).put(biopsy.getId(), biopsy);
+		}
+	}
+
+	public synchronized void remove(Biopsy biopsy) {
+		Status previous = filedUnder.remove(biopsy.getId());
+		if (previous != null) {
+			buckets.get(biopsy.getType()).get(previous).remove(biopsy.getId());
+		}
+	}
+
+	public synchronized int count(Biopsy.Category category, Status status) {
+		if (status != null) {
+			return buckets.get(category).get(status).size();
+		}
+		int total = 0;
+		for (TreeMap<Integer, Biopsy> bucket : buckets.get(category).values()) {
+			total += bucket.size();
+		}
+		return total;
+	}
+
+	/**
+	 * Returns up to {@code limit} biopsies of the category with ids above
+	 * {@code afterId}, in id order. A null status means every status.
+	 */
+	public synchronized List<Biopsy> page(Biopsy.Category category, Status status, int afterId, int limit) {
+		List<Biopsy> page = new ArrayList<>(Math.min(limit, 64));
+		if (status != null) {
+			for (Biopsy biopsy : buckets.get(category).get(status).tailMap(afterId, false).values()) {
+				if (page.size() == limit) {
+					break;
+				}
+				page.add(biopsy);
+			}
+			return page;
+		}
+
+		// Merge the per-status buckets, each already in id order.
+		List<Iterator<Map.Entry<Integer, Biopsy>>> cursors = new ArrayList<>();
+		List<Map.Entry<Integer, Biopsy>> heads = new ArrayList<>();
+		for (TreeMap<Integer, Biopsy> bucket : buckets.get(category).values()) {
+			Iterator<Map.Entry<Integer, Biopsy>> it = bucket.tailMap(afterId, false).entrySet().iterator();
+			cursors.add(it);
+			heads.add(it.hasNext() ? it.next() : null);
+		}
+		while (page.size() < limit) {
+			int min = -1;
+			for (int i = 0; i < heads.size(); i++) {
+				if (heads.get(i) != null && (min < 0 || heads.get(i).getKey() < heads.get(min).getKey())) {
+					min = i;
+				}
+			}
+			if (min < 0) {
+				break;
+			}
+			page.add(heads.get(min).getValue());
+			heads.set(min, cursors.get(min).hasNext() ? cursors.get(min).next() : null);
+		}
+		return page;
+	}
+}
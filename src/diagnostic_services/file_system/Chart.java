@@ -1,16 +1,23 @@
 package diagnostic_services.file_system;
 
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 import roles.*;
 
 public class Chart {
+	private static final int DEFAULT_ISSUED = ChartDates.parse("Dec 10, 2025");
+
 	private Patient patient;
 	private Integer chartId;
 	private HealthCareProvider user;
-	private String date = "Dec 10, 2025";
+	// Epoch day; see ChartDates.
+	private int issued = DEFAULT_ISSUED;
+	// The text given for a date that could not be parsed; kept so it is saved as it was.
+	private String unreadDate;
 	private final ArrayList<HealthCareProvider> others = new ArrayList<>();
 	private String allergies;
 	private String notes;
+	private final AtomicBoolean dirty = new AtomicBoolean(true);
 
 	public Chart() {}
 
@@ -31,6 +38,7 @@ public class Chart {
 
 	public void addNote(String str) {
 		notes = str;
+		dirty.set(true);
 	}
 
 	public String getNotes() {
@@ -47,42 +55,77 @@ public class Chart {
 
 	public void addAllergies(String all) {
 		allergies = all;
+		dirty.set(true);
 	}
 
 	public void addOthers(HealthCareProvider other) {
 		others.add(other);
+		dirty.set(true);
 	}
 
+	/** Parses the date once; see {@link ChartDates} for the accepted forms. */
 	public void setDate(String date) {
-		this.date = date;
+		setIssued(ChartDates.parse(date));
+		if (issued == ChartDates.NONE) {
+			unreadDate = date;
+		}
 	}
 
 	public String getDate() {
-		return date;
+		return issued == ChartDates.NONE ? unreadDate : ChartDates.format(issued);
+	}
+
+	public void setIssued(int epochDay) {
+		this.issued = epochDay;
+		this.unreadDate = null;
+		dirty.set(true);
+	}
+
+	/** The date text as given when it could not be parsed, otherwise null. */
+	public String getUnreadDate() {
+		return unreadDate;
+	}
+
+	/** Issue date as an epoch day, or {@link ChartDates#NONE}. */
+	public int getIssued() {
+		return issued;
 	}
 
 	public void setUser(HealthCareProvider person) {
 		this.user = person;
+		dirty.set(true);
 	}
 
 	public void setChartId(int id) {
 		this.chartId = id;
+		dirty.set(true);
 	}
 
 	public void setPatient(Patient patient) {
 		this.patient = patient;
+		dirty.set(true);
 	}
 
 	public int getId() {
 		return this.chartId;
 	}
 
+	/** True if the chart changed since it was last written. */
+	public boolean isDirty() {
+		return dirty.get();
+	}
+
+	/** Clears the flag, returning whether it was set; call before writing the current state out. */
+	public boolean clearDirty() {
+		return dirty.getAndSet(false);
+	}
+
 	@Override
 	public String toString() {
 		return " Chart Id: " + chartId + "\n" +
 				" Patient: " + patient + "\n" +
 				" Issued by: " + user + "\n" +
-				" Date Issued: " + date + "\n" +
+				" Date Issued: " + getDate() + "\n" +
 				" Others: " + others + "\n" +
 				" Allergies: " + allergies + "\n" +
 				" Notes: " + notes + "\n" +
@@ -0,0 +1,242 @@
+package diagnostic_services.file_system;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import roles.*;
+
+/**
+ * Chart histories kept in patients.json until someone asks for them. The
+ * load records where each patient's prevCharts array starts; a history is
+ * parsed from there on first use and kept in a bounded LRU cache. Histories
+ * with charts that have not been saved yet are pinned outside the cache so
+ * they cannot be evicted. Charts saved to the journal since the file was
+ * last written are laid over it by chart id.
+ */
+class ChartArchive {
+	interface Resolver {
+		Chart resolve(Patient patient, DataLoader.RawChart raw);
+	}
+
+	/** Gets either the live history of a patient or the charts stored for them, never both. */
+	interface HistoryVisitor {
+		void visit(int patientId, List<Chart> live, List<DataLoader.RawChart> stored) throws IOException;
+	}
+
+	private final Path file;
+	private final Resolver resolver;
+	private final HashMap<Integer, Long> offsets = new HashMap<>();
+	private final HashMap<Integer, List<Chart>> pinned = new HashMap<>();
+	private final LinkedHashMap<Integer, List<Chart>> cache;
+	private final HashMap<Integer, LinkedHashMap<Integer, DataLoader.RawChart>> journaled = new HashMap<>();
+	private int size = 0;
+
+	ChartArchive(Path file, int capacity, Resolver resolver) {
+		this.file = file;
+		this.resolver = resolver;
+		this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, List<Chart>> eldest) {
+				if (size() <= capacity) {
+					return false;
+				}
+				for (Chart chart : eldest.getValue()) {
+					if (chart.isDirty()) {
+						pinned.put(eldest.getKey(), eldest.getValue());
+						break;
+					}
+				}
+				return true;
+			}
+		};
+	}
+
+	/** Records where a patient's charts start in the file, or -1 if they have none. */
+	synchronized void index(int patientId, long offset, int count) {
+		if (offset >= 0) {
+			offsets.put(patientId, offset);
+		}
+		size += count;
+	}
+
+	/** Lays a journaled chart over the file; {@code added} when the file does not hold it yet. */
+	synchronized void journaled(DataLoader.RawChart chart, boolean added) {
+		journaled.computeIfAbsent(chart.patientId(), id -> new LinkedHashMap<>()).put(chart.chartId(), chart);
+		if (added) {
+			size++;
+		}
+	}
+
+	synchronized int size() {
+		return size;
+	}
+
+	synchronized List<Chart> history(Patient patient) throws IOException {
+		int id = patient.getId();
+		List<Chart> history = pinned.get(id);
+		if (history == null) {
+			history = cache.get(id);
+		}
+		if (history == null) {
+			history = new ArrayList<>();
+			for (DataLoader.RawChart raw : read(id)) {
+				history.add(resolver.resolve(patient, raw));
+			}
+			cache.put(id, history);
+		}
+		return history;
+	}
+
+	/** A copy of the history taken under the archive's lock, safe to read while charts are added. */
+	synchronized List<Chart> copyOfHistory(Patient patient) throws IOException {
+		return List.copyOf(history(patient));
+	}
+
+	synchronized void add(Chart chart) throws IOException {
+		Patient patient = chart.getPatient();
+		List<Chart> history = history(patient);
+		cache.remove(patient.getId());
+		pinned.put(patient.getId(), history);
+		history.add(chart);
+		size++;
+	}
+
+	/**
+	 * Charts changed since the last call, with their dirty flags cleared. The
+	 * caller journals them, after which no history needs pinning any more.
+	 */
+	synchronized List<Chart> takeDirty() {
+		List<Chart> dirty = new ArrayList<>();
+		for (Collection<List<Chart>> histories : List.of(pinned.values(), cache.values())) {
+			for (List<Chart> history : histories) {
+				for (Chart chart : history) {
+					if (chart.clearDirty()) {
+						dirty.add(chart);
+					}
+				}
+			}
+		}
+		return dirty;
+	}
+
+	/** Moves pinned histories into the cache once everything in them is on disk. */
+	synchronized void unpin() {
+		cache.putAll(pinned);
+		pinned.clear();
+	}
+
+	/**
+	 * Streams the whole file once, handing each patient's charts to the
+	 * visitor without caching them. Patients with a history in memory get
+	 * that instead, and patients not in the file follow.
+	 */
+	synchronized void scan(HistoryVisitor visitor) throws IOException {
+		HashSet<Integer> unvisited = new HashSet<>(pinned.keySet());
+		unvisited.addAll(journaled.keySet());
+		if (Files.exists(file)) {
+			try (JsonReader reader = JsonReader.open(file)) {
+				reader.beginArray();
+				while (reader.hasNext()) {
+					int id = 0;
+					List<DataLoader.RawChart> stored = new ArrayList<>();
+					reader.beginObject();
+					while (reader.hasNext()) {
+						switch (reader.nextName()) {
+							case "id" -> id = reader.nextInt();
+							case "prevCharts" -> {
+								reader.beginArray();
+								while (reader.hasNext()) {
+									stored.add(DataLoader.parseChart(reader));
+								}
+								reader.endArray();
+							}
+							default -> reader.skipValue();
+						}
+					}
+					reader.endObject();
+
+					unvisited.remove(id);
+					List<Chart> live = live(id);
+					if (live != null) {
+						visitor.visit(id, live, null);
+					} else {
+						visitor.visit(id, null, withJournal(id, stored));
+					}
+				}
+				reader.endArray();
+			}
+		}
+		for (int id : unvisited) {
+			List<Chart> live = live(id);
+			if (live != null) {
+				visitor.visit(id, live, null);
+			} else {
+				visitor.visit(id, null, withJournal(id, new ArrayList<>()));
+			}
+		}
+	}
+
+	/**
+	 * Called once the file has been rewritten with every history in it: the
+	 * offsets are replaced, the journaled charts are dropped and pinned
+	 * histories become ordinary cache entries.
+	 */
+	synchronized void saved(DataLoader rescan) {
+		offsets.clear();
+		size = 0;
+		for (DataLoader.RawPatient raw : rescan.patients) {
+			index(raw.patient().getId(), raw.chartsAt(), raw.chartCount());
+		}
+		journaled.clear();
+		unpin();
+	}
+
+	private List<Chart> live(int patientId) {
+		List<Chart> history = pinned.get(patientId);
+		return history != null ? history : cache.get(patientId);
+	}
+
+	private List<DataLoader.RawChart> read(int patientId) throws IOException {
+		List<DataLoader.RawChart> charts = new ArrayList<>();
+		Long offset = offsets.get(patientId);
+		if (offset == null) {
+			return withJournal(patientId, charts);
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			channel.position(offset);
+			JsonReader reader = new JsonReader(Channels.newInputStream(channel), 4096);
+			reader.beginArray();
+			while (reader.hasNext()) {
+				charts.add(DataLoader.parseChart(reader));
+			}
+			reader.endArray();
+		}
+		return withJournal(patientId, charts);
+	}
+
+	/** The stored charts with journaled versions swapped in and new journaled charts appended. */
+	private List<DataLoader.RawChart> withJournal(int patientId, List<DataLoader.RawChart> stored) {
+		LinkedHashMap<Integer, DataLoader.RawChart> overlay = journaled.get(patientId);
+		if (overlay == null) {
+			return stored;
+		}
+		LinkedHashMap<Integer, DataLoader.RawChart> remaining = new LinkedHashMap<>(overlay);
+		List<DataLoader.RawChart> charts = new ArrayList<>(stored.size() + overlay.size());
+		for (DataLoader.RawChart chart : stored) {
+			DataLoader.RawChart newer = remaining.remove(chart.chartId());
+			charts.add(newer != null ? newer : chart);
+		}
+		charts.addAll(remaining.values());
+		return charts;
+	}
+}
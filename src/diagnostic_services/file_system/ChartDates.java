@@ -0,0 +1,53 @@
+package diagnostic_services.file_system;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * Chart issue dates as epoch days, the form they are kept in once loaded.
+ * The files keep the "Nov 6, 2025" text; ISO dates and full month names
+ * are read as well. {@link #NONE} stands for a missing or unreadable date
+ * and sorts before every real one.
+ */
+public final class ChartDates {
+	public static final int NONE = Integer.MIN_VALUE;
+
+	private static final DateTimeFormatter WRITTEN = DateTimeFormatter.ofPattern("MMM d, yyyy", Locale.US);
+	private static final DateTimeFormatter[] READ = {
+		new DateTimeFormatterBuilder().parseCaseInsensitive().appendPattern("MMM d, yyyy").toFormatter(Locale.US),
+		new DateTimeFormatterBuilder().parseCaseInsensitive().appendPattern("MMMM d, yyyy").toFormatter(Locale.US),
+		DateTimeFormatter.ISO_LOCAL_DATE,
+	};
+
+	private ChartDates() {}
+
+	public static int parse(String date) {
+		if (date == null || date.isBlank()) {
+			return NONE;
+		}
+		for (DateTimeFormatter format : READ) {
+			try {
+				return (int) LocalDate.parse(date.trim(), format).toEpochDay();
+			} catch (DateTimeParseException e) {
+				// try the next format
+			}
+		}
+		return NONE;
+	}
+
+	/** The date as charts write it, or null for {@link #NONE}. */
+	public static String format(int epochDay) {
+		return epochDay == NONE ? null : WRITTEN.format(LocalDate.ofEpochDay(epochDay));
+	}
+
+	public static int of(LocalDate date) {
+		return (int) date.toEpochDay();
+	}
+
+	public static int today() {
+		return of(LocalDate.now());
+	}
+}
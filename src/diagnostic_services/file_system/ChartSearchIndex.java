@@ -0,0 +1,197 @@
+package diagnostic_services.file_system;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+/**
+ * Inverted index from the words in chart notes and allergies to the ids of
+ * the charts containing them. Posting lists are sorted int arrays, so AND
+ * is an intersection and OR a merge, neither touching a chart.
+ *
+ * Queries are whitespace-separated terms that must all match; "OR" between
+ * groups of terms matches either group, and a trailing '*' matches every
+ * word starting with the term, e.g. "penicil* rash OR latex".
+ */
+public class ChartSearchIndex {
+	private static final int[] NONE = new int[0];
+
+	private final TreeMap<String, Postings> terms = new TreeMap<>();
+	private final HashMap<Integer, Integer> patientOf = new HashMap<>();
+
+	/** Sorted, duplicate-free chart ids, appended to in place while ids arrive in order. */
+	private static final class Postings {
+		int[] ids = new int[2];
+		int size = 0;
+		boolean sorted = true;
+
+		void add(int id) {
+			if (size > 0 && ids[size - 1] == id) {
+				return;
+			}
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			if (size > 0 && ids[size - 1] > id) {
+				sorted = false;
+			}
+			ids[size++] = id;
+		}
+
+		int[] view() {
+			if (!sorted) {
+				Arrays.sort(ids, 0, size);
+				int n = 0;
+				for (int i = 0; i < size; i++) {
+					if (n == 0 || ids[n - 1] != ids[i]) {
+						ids[n++] = ids[i];
+					}
+				}
+				size = n;
+				sorted = true;
+			}
+			return size == ids.length ? ids : Arrays.copyOf(ids, size);
+		}
+	}
+
+	public synchronized void add(int patientId, int chartId, String allergies, String notes) {
+		patientOf.put(chartId, patientId);
+		addText(chartId, allergies);
+		addText(chartId, notes);
+	}
+
+	/** Patient whose history holds the chart, or 0 if the chart is not indexed. */
+	public synchronized int patientOf(int chartId) {
+		Integer patientId = patientOf.get(chartId);
+		return patientId == null ? 0 : patientId;
+	}
+
+	public synchronized int size() {
+		return patientOf.size();
+	}
+
+	/** Ids of the charts matching the query, in ascending order. */
+	public synchronized int[] search(String query) {
+		int[] result = NONE;
+		for (String alternative : query.split("\\s+OR\\s+")) {
+			int[] matches = null;
+			for (String term : alternative.trim().split("\\s+")) {
+				if (term.isEmpty()) {
+					continue;
+				}
+				int[] postings = postings(term);
+				matches = matches == null ? postings : intersect(matches, postings);
+				if (matches.length == 0) {
+					break;
+				}
+			}
+			if (matches != null) {
+				result = union(result, matches);
+			}
+		}
+		return result.clone();
+	}
+
+	private int[] postings(String term) {
+		if (term.endsWith("*")) {
+			String prefix = normalize(term.substring(0, term.length() - 1));
+			if (prefix.isEmpty()) {
+				return NONE;
+			}
+			Collection<Postings> matching = terms.subMap(prefix, prefix + Character.MAX_VALUE).values();
+			if (matching.size() == 1) {
+				return matching.iterator().next().view();
+			}
+			// Gathered then sorted once; merging pairwise is quadratic when many words share the prefix.
+			int[] all = NONE;
+			int n = 0;
+			for (Postings postings : matching) {
+				int[] ids = postings.view();
+				if (n + ids.length > all.length) {
+					all = Arrays.copyOf(all, Math.max(n + ids.length, all.length * 2));
+				}
+				System.arraycopy(ids, 0, all, n, ids.length);
+				n += ids.length;
+			}
+			Arrays.sort(all, 0, n);
+			int unique = 0;
+			for (int i = 0; i < n; i++) {
+				if (unique == 0 || all[unique - 1] != all[i]) {
+					all[unique++] = all[i];
+				}
+			}
+			return Arrays.copyOf(all, unique);
+		}
+		Postings postings = terms.get(normalize(term));
+		return postings == null ? NONE : postings.view();
+	}
+
+	private void addText(int chartId, String text) {
+		if (text == null) {
+			return;
+		}
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if (word && start < 0) {
+				start = i;
+			} else if (!word && start >= 0) {
+				String token = text.substring(start, i).toLowerCase();
+				terms.computeIfAbsent(token, k -> new Postings()).add(chartId);
+				start = -1;
+			}
+		}
+	}
+
+	private static String normalize(String term) {
+		StringBuilder out = new StringBuilder(term.length());
+		for (int i = 0; i < term.length(); i++) {
+			char c = term.charAt(i);
+			if (Character.isLetterOrDigit(c)) {
+				out.append(Character.toLowerCase(c));
+			}
+		}
+		return out.toString();
+	}
+
+	private static int[] intersect(int[] a, int[] b) {
+		int[] out = new int[Math.min(a.length, b.length)];
+		int i = 0, j = 0, n = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				i++;
+			} else if (a[i] > b[j]) {
+				j++;
+			} else {
+				out[n++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(out, n);
+	}
+
+	private static int[] union(int[] a, int[] b) {
+		if (a.length == 0) {
+			return b;
+		}
+		if (b.length == 0) {
+			return a;
+		}
+		int[] out = new int[a.length + b.length];
+		int i = 0, j = 0, n = 0;
+		while (i < a.length || j < b.length) {
+			if (j == b.length || (i < a.length && a[i] < b[j])) {
+				out[n++] = a[i++];
+			} else if (i == a.length || b[j] < a[i]) {
+				out[n++] = b[j++];
+			} else {
+				out[n++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(out, n);
+	}
+}
@@ -0,0 +1,75 @@
+package diagnostic_services.file_system;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Charts ordered by issue date. Each chart is one long, the epoch day in the
+ * high half and the chart id in the low half, kept in a sorted array; a date
+ * range is two binary searches and a copy of what lies between them.
+ */
+public class ChartTimeIndex {
+	private long[] keys = new long[16];
+	private int size = 0;
+	private boolean sorted = true;
+	private final HashMap<Integer, Integer> patientOf = new HashMap<>();
+
+	public synchronized void add(int patientId, int chartId, int issued) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+		}
+		long key = key(issued, chartId);
+		if (size > 0 && keys[size - 1] > key) {
+			sorted = false;
+		}
+		keys[size++] = key;
+		patientOf.put(chartId, patientId);
+	}
+
+	/** Ids of the charts issued from {@code fromDay} to {@code toDay} inclusive, oldest first. */
+	public synchronized int[] between(int fromDay, int toDay) {
+		if (fromDay > toDay) {
+			return new int[0];
+		}
+		if (!sorted) {
+			Arrays.sort(keys, 0, size);
+			sorted = true;
+		}
+		int from = lowerBound(key(fromDay, 0));
+		int to = toDay == Integer.MAX_VALUE ? size : lowerBound(key(toDay + 1, 0));
+		int[] chartIds = new int[to - from];
+		for (int i = from; i < to; i++) {
+			chartIds[i - from] = (int) keys[i];
+		}
+		return chartIds;
+	}
+
+	/** Patient whose history holds the chart, or 0 if the chart is not indexed. */
+	public synchronized int patientOf(int chartId) {
+		Integer patientId = patientOf.get(chartId);
+		return patientId == null ? 0 : patientId;
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	/** Chart ids are positive, so they fit the low half without changing the order. */
+	private static long key(int issued, int chartId) {
+		return ((long) issued << 32) | (chartId & 0xffffffffL);
+	}
+
+	private int lowerBound(long key) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (keys[mid] < key) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,479 @@
+package diagnostic_services.file_system;
+
+import diagnostic_services.iteration_2.Sample;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.ToIntFunction;
+import roles.*;
+
+/**
+ * Parses the diagnostic data files in parallel. Every file is read on its own
+ * fork-join task into plain records that only hold ids; resolving those ids to
+ * people is left to a single pass afterwards, so no file waits on another.
+ * When a {@link BinarySnapshot} newer than all of the files is present it is
+ * read instead, and after a JSON load a new one is written in the background.
+ */
+class DataLoader {
+	/** {@code unreadDate} keeps a dateIss text that could not be parsed, so saving writes it back unchanged. */
+	record RawChart(int patientId, int chartId, int userId, int issued, String unreadDate, int[] others, String allergies, String notes) {
+		String dateText() {
+			return issued == ChartDates.NONE ? unreadDate : ChartDates.format(issued);
+		}
+	}
+	record RawPatient(Patient patient, long chartsAt, int chartCount) {}
+	record RawSample(int id, String sampleType, Status status, Sample.Priority priority, int patientId, LinkedHashMap<String, String> results, long[] statusTimes, int claimedBy) {}
+	record RawPCR(int id, int patientId, int emtId1, int emtId2, String notes) {}
+	record RawBiopsy(int id, Biopsy.Category type, int doctorId, int patientId, Status status, String notes, long[] statusTimes) {}
+
+	/** The change logs kept beside patients.json, samples.json, pcrs.json and biopsies.json. */
+	record Journals(Journal patients, Journal samples, Journal pcrs, Journal biopsies) {
+		/** Sets each journal's record count when a snapshot load skipped replaying it. */
+		void recount() throws IOException {
+			for (Journal journal : List.of(patients, samples, pcrs, biopsies)) {
+				journal.recount();
+			}
+		}
+	}
+
+	private interface Parser<T> {
+		void parse(JsonReader reader, List<T> out) throws IOException;
+	}
+
+	List<Doctor> doctors;
+	List<Nurse> nurses;
+	List<LabTech> labTechs;
+	List<EMT> emts;
+	List<RawPatient> patients;
+	List<RawSample> samples;
+	List<RawPCR> pcrs;
+	List<RawBiopsy> biopsies;
+	// Charts saved to the journal since patients.json was last written, latest version of each.
+	List<RawChart> journaledCharts;
+	int lastBiopsyId;
+	int lastChartId;
+
+	static DataLoader load(String dataDir, Journals journals) {
+		return load(dataDir, journals, ForkJoinPool.commonPool());
+	}
+
+	static DataLoader load(String dataDir, Journals journals, ForkJoinPool pool) {
+		Path dir = Path.of(dataDir);
+		if (BinarySnapshot.isEnabled() && BinarySnapshot.isFresh(dir)) {
+			try {
+				DataLoader snapshot = BinarySnapshot.read(dir);
+				if (snapshot != null) {
+					journals.recount();
+					return snapshot;
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		long readAt = System.currentTimeMillis();
+		DataLoader data = new DataLoader();
+
+		ForkJoinTask<List<Doctor>> doctors = pool.submit(() -> read(dir.resolve("doctors.json"), DataLoader::parseDoctors));
+		ForkJoinTask<List<Nurse>> nurses = pool.submit(() -> read(dir.resolve("nurses.json"), DataLoader::parseNurses));
+		ForkJoinTask<List<LabTech>> labTechs = pool.submit(() -> read(dir.resolve("labtechs.json"), DataLoader::parseLabTechs));
+		ForkJoinTask<List<EMT>> emts = pool.submit(() -> read(dir.resolve("emts.json"), DataLoader::parseEMTs));
+		ForkJoinTask<List<RawPatient>> patients = pool.submit(() -> read(dir.resolve("patients.json"), data::parsePatients));
+		ForkJoinTask<List<RawChart>> journaledCharts = pool.submit(() -> readJournaled(null, journals.patients(),
+				(reader, out) -> out.add(parseChart(reader)), RawChart::chartId));
+		ForkJoinTask<List<RawSample>> samples = pool.submit(() -> readJournaled(journals.samples().getSnapshot(), journals.samples(), DataLoader::parseSamples, RawSample::id));
+		ForkJoinTask<List<RawPCR>> pcrs = pool.submit(() -> readJournaled(journals.pcrs().getSnapshot(), journals.pcrs(), DataLoader::parsePCRs, RawPCR::id));
+		ForkJoinTask<List<RawBiopsy>> biopsies = pool.submit(() -> data.readBiopsies(journals.biopsies()));
+
+		data.doctors = doctors.join();
+		data.nurses = nurses.join();
+		data.labTechs = labTechs.join();
+		data.emts = emts.join();
+		data.patients = patients.join();
+		data.journaledCharts = journaledCharts.join();
+		data.samples = samples.join();
+		data.pcrs = pcrs.join();
+		data.biopsies = biopsies.join();
+
+		if (BinarySnapshot.isEnabled()) {
+			// Not a daemon, so a short-lived process still finishes the write on exit.
+			new Thread(() -> {
+				try {
+					BinarySnapshot.write(dir, data, readAt);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}, "snapshot-writer").start();
+		}
+		return data;
+	}
+
+	/** Finds where each patient's charts start in patients.json, without parsing the charts. */
+	static DataLoader readPatients(Path path) {
+		DataLoader data = new DataLoader();
+		data.patients = read(path, data::parsePatients);
+		return data;
+	}
+
+	private static <T> List<T> read(Path path, Parser<T> parser) {
+		List<T> out = new ArrayList<>();
+		try (JsonReader reader = JsonReader.open(path)) {
+			reader.beginArray();
+			while (reader.hasNext()) {
+				parser.parse(reader, out);
+			}
+			reader.endArray();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return out;
+	}
+
+	/**
+	 * Reads a snapshot and replays its journal on top, where every record is
+	 * a full copy of one entity; the last copy of each id wins. Without a
+	 * snapshot only the journal is read.
+	 */
+	private static <T> List<T> readJournaled(Path snapshot, Journal journal, Parser<T> parser, ToIntFunction<T> idOf) {
+		LinkedHashMap<Integer, T> byId = new LinkedHashMap<>();
+		List<T> parsed = new ArrayList<>(1);
+		Parser<T> apply = (record, unused) -> {
+			parsed.clear();
+			parser.parse(record, parsed);
+			T value = parsed.get(0);
+			byId.put(idOf.applyAsInt(value), value);
+		};
+
+		if (snapshot != null && Files.exists(snapshot)) {
+			read(snapshot, apply);
+		}
+		try {
+			journal.replay(record -> apply.parse(record, null));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return new ArrayList<>(byId.values());
+	}
+
+	/**
+	 * Reads the biopsy snapshot and replays its journal on top. Tombstones
+	 * remove their biopsy but still count toward {@link #lastBiopsyId}.
+	 */
+	private List<RawBiopsy> readBiopsies(Journal journal) {
+		LinkedHashMap<Integer, RawBiopsy> byId = new LinkedHashMap<>();
+		int[] lastId = { 0 };
+		List<RawBiopsy> parsed = new ArrayList<>(1);
+		Parser<RawBiopsy> apply = (record, unused) -> {
+			parsed.clear();
+			String op = parseBiopsyRecord(record, parsed);
+			RawBiopsy biopsy = parsed.get(0);
+			lastId[0] = Math.max(lastId[0], biopsy.id());
+			if (op.equals("delete")) {
+				byId.remove(biopsy.id());
+			} else {
+				byId.put(biopsy.id(), biopsy);
+			}
+		};
+
+		read(journal.getSnapshot(), apply);
+		try {
+			journal.replay(record -> apply.parse(record, null));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		lastBiopsyId = lastId[0];
+		return new ArrayList<>(byId.values());
+	}
+
+	private static void parseDoctors(JsonReader reader, List<Doctor> out) throws IOException {
+		String firstName = "";
+		String lastName = "";
+		int id = 0;
+		Doctor.Specialty specialty = null;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "firstName" -> firstName = reader.nextString();
+				case "lastName" -> lastName = reader.nextString();
+				case "id" -> id = reader.nextInt();
+				case "specialty" -> specialty = Doctor.Specialty.valueOf(reader.nextString());
+				default -> reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		out.add(new Doctor(firstName, lastName, id, specialty));
+	}
+
+	private static void parseNurses(JsonReader reader, List<Nurse> out) throws IOException {
+		Patient p = parsePerson(reader);
+		out.add(new Nurse(p.getFirstName(), p.getLastName(), p.getId()));
+	}
+
+	private static void parseLabTechs(JsonReader reader, List<LabTech> out) throws IOException {
+		Patient p = parsePerson(reader);
+		out.add(new LabTech(p.getFirstName(), p.getLastName(), p.getId()));
+	}
+
+	private static void parseEMTs(JsonReader reader, List<EMT> out) throws IOException {
+		Patient p = parsePerson(reader);
+		out.add(new EMT(p.getFirstName(), p.getLastName(), p.getId()));
+	}
+
+	private static Patient parsePerson(JsonReader reader) throws IOException {
+		String firstName = "";
+		String lastName = "";
+		int id = 0;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "firstName" -> firstName = reader.nextString();
+				case "lastName" -> lastName = reader.nextString();
+				case "id" -> id = reader.nextInt();
+				default -> reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		return new Patient(firstName, lastName, id);
+	}
+
+	/**
+	 * Charts are left in the file for {@link ChartArchive}; only the offset of
+	 * each prevCharts array, the count and the highest chart id are kept.
+	 */
+	private void parsePatients(JsonReader reader, List<RawPatient> out) throws IOException {
+		String firstName = "";
+		String lastName = "";
+		int id = 0;
+		long chartsAt = -1;
+		int chartCount = 0;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "firstName" -> firstName = reader.nextString();
+				case "lastName" -> lastName = reader.nextString();
+				case "id" -> id = reader.nextInt();
+				case "prevCharts" -> {
+					reader.peek();
+					chartsAt = reader.position();
+					reader.beginArray();
+					while (reader.hasNext()) {
+						lastChartId = Math.max(lastChartId, parseChartId(reader));
+						chartCount++;
+					}
+					reader.endArray();
+				}
+				default -> reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		out.add(new RawPatient(new Patient(firstName, lastName, id), chartsAt, chartCount));
+	}
+
+	private static int parseChartId(JsonReader reader) throws IOException {
+		int chartId = 0;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals("chartId")) {
+				chartId = reader.nextInt();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return chartId;
+	}
+
+	static RawChart parseChart(JsonReader reader) throws IOException {
+		int patientId = 0;
+		int chartId = 0;
+		int userId = 0;
+		int issued = ChartDates.NONE;
+		String unreadDate = null;
+		int[] others = new int[0];
+		String allergies = null;
+		String notes = null;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "patientId" -> patientId = reader.nextInt();
+				case "chartId" -> chartId = reader.nextInt();
+				case "userIdIss" -> userId = reader.nextInt();
+				case "dateIss" -> {
+					String date = reader.nextString();
+					issued = ChartDates.parse(date);
+					if (issued == ChartDates.NONE) {
+						unreadDate = date;
+					}
+				}
+				case "others" -> others = parseIds(reader);
+				case "allergies" -> allergies = reader.nextString();
+				case "additionalNotes" -> notes = reader.nextString();
+				default -> reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		return new RawChart(patientId, chartId, userId, issued, unreadDate, others, allergies, notes);
+	}
+
+	private static int[] parseIds(JsonReader reader) throws IOException {
+		int[] ids = new int[4];
+		int n = 0;
+		reader.beginArray();
+		while (reader.hasNext()) {
+			if (n == ids.length) {
+				int[] grown = new int[n * 2];
+				System.arraycopy(ids, 0, grown, 0, n);
+				ids = grown;
+			}
+			ids[n++] = reader.nextInt();
+		}
+		reader.endArray();
+
+		int[] exact = new int[n];
+		System.arraycopy(ids, 0, exact, 0, n);
+		return exact;
+	}
+
+	private static void parseSamples(JsonReader reader, List<RawSample> out) throws IOException {
+		int id = 0;
+		String sampleType = "";
+		int patientId = 0;
+		LinkedHashMap<String, String> result = new LinkedHashMap<>();
+		Status status = Status.PENDING;
+		Sample.Priority priority = Sample.Priority.ROUTINE;
+		long[] statusTimes = new long[0];
+		int claimedBy = 0;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "id" -> id = reader.nextInt();
+				case "sampleType" -> sampleType = reader.nextString();
+				case "status" -> status = Status.valueOf(reader.nextString());
+				case "priority" -> priority = Sample.Priority.valueOf(reader.nextString());
+				case "patient" -> patientId = reader.nextInt();
+				case "results" -> parseResults(reader, result);
+				case "statusTimes" -> statusTimes = parseStatusTimes(reader);
+				case "claimedBy" -> claimedBy = reader.nextInt();
+				default -> reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		out.add(new RawSample(id, sampleType, status, priority, patientId, result, statusTimes, claimedBy));
+	}
+
+	/** Epoch milliseconds by status name, indexed by {@link Status} ordinal; statuses never reached are 0. */
+	private static long[] parseStatusTimes(JsonReader reader) throws IOException {
+		long[] times = new long[Status.values().length];
+		reader.beginObject();
+		while (reader.hasNext()) {
+			times[Status.valueOf(reader.nextName()).ordinal()] = reader.nextLong();
+		}
+		reader.endObject();
+		return times;
+	}
+
+	/**
+	 * Results are stored either as a JSON object or, in older files, as one
+	 * "Field: value, Field: value" string.
+	 */
+	private static void parseResults(JsonReader reader, LinkedHashMap<String, String> result) throws IOException {
+		if (reader.peek() == JsonReader.Token.BEGIN_OBJECT) {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				result.put(reader.nextName(), reader.nextString());
+			}
+			reader.endObject();
+			return;
+		}
+
+		String str = reader.nextString();
+		int start = 0;
+		while (start < str.length()) {
+			int end = str.indexOf(',', start);
+			if (end < 0) {
+				end = str.length();
+			}
+			int colon = str.indexOf(':', start);
+			if (colon > start && colon < end) {
+				result.put(str.substring(start, colon).strip(), str.substring(colon + 1, end).strip());
+			}
+			start = end + 1;
+		}
+	}
+
+	static void parsePCRs(JsonReader reader, List<RawPCR> out) throws IOException {
+		int id = 0;
+		int patientId = 0;
+		int emtId1 = 0;
+		int emtId2 = 0;
+		String notes = "";
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "id" -> id = reader.nextInt();
+				case "patient" -> patientId = reader.nextInt();
+				case "emts" -> {
+					int[] ids = parseIds(reader);
+					emtId1 = ids.length > 0 ? ids[0] : 0;
+					emtId2 = ids.length > 1 ? ids[1] : 0;
+				}
+				case "notes" -> notes = reader.nextString();
+				default -> reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		out.add(new RawPCR(id, patientId, emtId1, emtId2, notes));
+	}
+
+	/**
+	 * Parses one biopsy object, returning its journal "op" field. Snapshot
+	 * entries are saves unless they are tombstones marked "deleted".
+	 */
+	private static String parseBiopsyRecord(JsonReader reader, List<RawBiopsy> out) throws IOException {
+		String op = "save";
+		Biopsy.Category type = null;
+		int doctorId = 0;
+		int patientId = 0;
+		Status status = Status.PENDING;
+		String notes = "";
+		int id = 0;
+		long[] statusTimes = new long[0];
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "type" -> type = Biopsy.Category.valueOf(reader.nextString());
+				case "doctor" -> doctorId = reader.nextInt();
+				case "patient" -> patientId = reader.nextInt();
+				case "status" -> status = Status.valueOf(reader.nextString());
+				case "notes" -> notes = reader.nextString();
+				case "id" -> id = reader.nextInt();
+				case "op" -> op = reader.nextString();
+				case "deleted" -> op = reader.nextBoolean() ? "delete" : op;
+				case "statusTimes" -> statusTimes = parseStatusTimes(reader);
+				default -> reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		out.add(new RawBiopsy(id, type, doctorId, patientId, status, notes, statusTimes));
+		return op;
+	}
+}
@@ -0,0 +1,72 @@
+package diagnostic_services.file_system;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Modification times of the files in a data directory as of the last load,
+ * refreshed whenever this process writes one of them, so that only changes
+ * made by someone else count as the data going stale.
+ */
+class DataStamps {
+	private final Path dir;
+	private final ConcurrentHashMap<Path, Long> seen = new ConcurrentHashMap<>();
+
+	DataStamps(Path dir) {
+		this.dir = dir;
+	}
+
+	void recordAll() {
+		seen.clear();
+		for (Path file : list()) {
+			record(file);
+		}
+	}
+
+	void record(Path file) {
+		Path name = file.getFileName();
+		try {
+			seen.put(name, Files.getLastModifiedTime(file).toMillis());
+		} catch (IOException e) {
+			seen.remove(name);
+		}
+	}
+
+	boolean changed() {
+		Set<Path> present = new HashSet<>();
+		for (Path file : list()) {
+			Path name = file.getFileName();
+			present.add(name);
+			Long stamp = seen.get(name);
+			try {
+				if (stamp == null || stamp != Files.getLastModifiedTime(file).toMillis()) {
+					return true;
+				}
+			} catch (IOException e) {
+				return true;
+			}
+		}
+		return !present.containsAll(seen.keySet());
+	}
+
+	private Set<Path> list() {
+		Set<Path> files = new HashSet<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+			for (Path file : stream) {
+				String name = file.getFileName().toString();
+				// Temporary files and the binary snapshot never hold anything the JSON does not.
+				if (!name.endsWith(".tmp") && !name.equals(BinarySnapshot.FILE_NAME)) {
+					files.add(file);
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return files;
+	}
+}
@@ -0,0 +1,45 @@
+package diagnostic_services.file_system;
+
+/**
+ * The FilerSystem shared by every diagnostic menu. It is loaded on first use
+ * and reloaded only when a data file has been changed by something other
+ * than this process, so moving between menus does not re-read the disk.
+ * Unsaved changes are saved before a reload and when the process exits.
+ */
+public final class DiagnosticStore {
+	private static FilerSystem shared;
+	private static boolean hooked;
+
+	private DiagnosticStore() {}
+
+	public static synchronized FilerSystem get() {
+		if (shared == null) {
+			shared = new FilerSystem();
+			if (!hooked) {
+				Runtime.getRuntime().addShutdownHook(new Thread(DiagnosticStore::close, "diagnostic-save"));
+				hooked = true;
+			}
+		} else if (shared.isStale()) {
+			shared.saveData();
+			shared.close();
+			shared = new FilerSystem();
+		}
+		return shared;
+	}
+
+	/** Saves whatever changed in the shared instance, if it has been loaded. */
+	public static synchronized void save() {
+		if (shared != null) {
+			shared.saveData();
+		}
+	}
+
+	/** Saves and releases the shared instance; the next {@link #get} loads it again. */
+	public static synchronized void close() {
+		if (shared != null) {
+			shared.saveData();
+			shared.close();
+			shared = null;
+		}
+	}
+}
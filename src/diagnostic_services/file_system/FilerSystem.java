@@ -1,406 +1,250 @@
 package diagnostic_services.file_system;
 
 import diagnostic_services.iteration_2.Ambulance;
+import diagnostic_services.iteration_2.LabWorklist;
 import diagnostic_services.iteration_2.PCR;
 import diagnostic_services.iteration_2.Sample;
+import diagnostic_services.iteration_2.SampleResults;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntUnaryOperator;
 import roles.*;
 
 public class FilerSystem {
-	private final LinkedHashMap<Integer, Doctor> doctors = new LinkedHashMap<>();
-	private final LinkedHashMap<Integer, Nurse> nurses = new LinkedHashMap<>();
-	private final LinkedHashMap<Integer, Patient> patients = new LinkedHashMap<>();
-	private final LinkedHashMap<Integer, Chart> charts = new LinkedHashMap<>();
-  private final LinkedHashMap<Integer, LabTech> labTechs = new LinkedHashMap<>();
-	private final LinkedHashMap<Integer, roles.EMT> emts = new LinkedHashMap<>();
-	private final LinkedHashMap<Integer, Sample> samples = new LinkedHashMap<>();
-	private final LinkedHashMap<Integer, PCR> pcrs = new LinkedHashMap<>();
-	private final LinkedHashMap<Integer, Biopsy> biopsies = new LinkedHashMap<>();
-
-
-	private static final String PATH_DOC = "./src/diagnostic_services/file_system/Data/doctors.json";
-	private static final String PATH_NUR = "./src/diagnostic_services/file_system/Data/nurses.json";
-	private static final String PATH_PAT = "./src/diagnostic_services/file_system/Data/patients.json";
-	private static final String PATH_LAB = "./src/diagnostic_services/file_system/Data/labtechs.json";
-	private static final String PATH_EMT = "./src/diagnostic_services/file_system/Data/emts.json";
-	private static final String PATH_SAM = "./src/diagnostic_services/file_system/Data/samples.json";
-	private static final String PATH_PCR = "./src/diagnostic_services/file_system/Data/pcrs.json";
-	private static final String PATH_BIO = "./src/diagnostic_services/file_system/Data/biopsies.json";
+	private final PersonRegistry people = new PersonRegistry();
+	private final ConcurrentSkipListMap<Integer, Sample> samples = new ConcurrentSkipListMap<>();
+	private final SampleResults.Tables sampleResults = new SampleResults.Tables();
+	private final LabWorklist labWorklist = new LabWorklist();
+	private final ConcurrentSkipListMap<Integer, PCR> pcrs = new ConcurrentSkipListMap<>();
+	private final ConcurrentSkipListMap<Integer, Biopsy> biopsies = new ConcurrentSkipListMap<>();
+
+
+	public static final String DATA_DIR = "./src/diagnostic_services/file_system/Data";
+
+	private final String pathDoc;
+	private final String pathPat;
+	private final String pathSam;
+	private final String pathPcr;
+	private final String pathBio;
+
+	// Edits journaled before a data file is rewritten with all of them folded in.
+	private static final int JOURNAL_COMPACT_AFTER = 500;
+	private final Journal biopsyJournal;
+	private final Journal sampleJournal;
+	private final Journal pcrJournal;
+	private final Journal chartJournal;
+	private final IdSequence biopsyIds = new IdSequence();
+	private final BiopsyIndex biopsyIndex = new BiopsyIndex();
+	private final DataStamps stamps;
+
+	private static final int CHART_CACHE_SIZE = 1024;
+	private final ChartArchive chartArchive;
+	private final IdSequence chartIds = new IdSequence();
+	private ChartSearchIndex chartSearch;
+	private ProviderChartIndex providerCharts;
+	private ChartTimeIndex chartTimes;
+
+	private final TurnaroundMetrics turnaround = new TurnaroundMetrics();
+
+	private final IdSequence sampleIds = new IdSequence();
+	private final IdSequence pcrIds = new IdSequence();
+
+	// One write lock per data file, held across an edit and the persistence it triggers.
+	private final ReentrantLock patientsLock = new ReentrantLock();
+	private final ReentrantLock samplesLock = new ReentrantLock();
+	private final ReentrantLock pcrsLock = new ReentrantLock();
+	private final ReentrantLock biopsiesLock = new ReentrantLock();
 
 
 	public FilerSystem() {
-		this.loadStaff();
-		this.loadPatients();
-		this.loadSamples();
-		this.loadPCR();
-		this.loadBiopsies();
+		this(DATA_DIR);
 	}
 
-	private void loadPatients() {
-		File file = new File(PATH_PAT);
-		try {
-			Scanner sc = new Scanner(file);
-			this.parseChartJson(sc);
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		}
+	public FilerSystem(String dataDir) {
+		pathDoc = dataDir + "/doctors.json";
+		pathPat = dataDir + "/patients.json";
+		pathSam = dataDir + "/samples.json";
+		pathPcr = dataDir + "/pcrs.json";
+		pathBio = dataDir + "/biopsies.json";
+
+		stamps = new DataStamps(Path.of(dataDir));
+		stamps.recordAll();
+
+		biopsyJournal = this.journal(pathBio);
+		sampleJournal = this.journal(pathSam);
+		pcrJournal = this.journal(pathPcr);
+		chartJournal = this.journal(pathPat);
+		chartArchive = new ChartArchive(Path.of(pathPat), CHART_CACHE_SIZE, this::toChart);
+		this.resolve(DataLoader.load(dataDir, new DataLoader.Journals(chartJournal, sampleJournal, pcrJournal, biopsyJournal)));
 	}
 
-	private String cleanVal(String str) {
-		return str.strip()
-			.replace(",", "")
-			.replace("\"", "")
-			.replace("[", "")
-			.replace("]", "");
+	private Journal journal(String path) {
+		Journal journal = new Journal(Path.of(path), JOURNAL_COMPACT_AFTER);
+		journal.setOnWrite(stamps::record);
+		return journal;
 	}
 
-	private void loadBiopsies() {
-    File file = new File(PATH_BIO);
-    try {
-      Scanner sc = new Scanner(file);
-      Biopsy.Category type = null;
-      Doctor doctor = null;
-      Patient patient = null;
-			Status status = null;
-			String notes = "";
-      int id = 0;
-
-      while (sc.hasNextLine()) {
-        String line = sc.nextLine();
-
-        if (line.contains("type")) {
-          String typeStr = cleanVal(line.split(":")[1]);
-          type = Biopsy.Category.valueOf(typeStr);
-        }
-        if (line.contains("doctor")) {
-          int docId = Integer.parseInt(cleanVal(line.split(":")[1]));
-          doctor = this.getDoctorById(docId);
-        }
-        if (line.contains("patient")) {
-          int patId = Integer.parseInt(cleanVal(line.split(":")[1]));
-          patient = this.getPatientById(patId);
-        }
-				if (line.contains("notes")) {
-					notes += cleanVal(line.split(":")[1]);
-				}
-        if (line.contains("id")) {
-          id = Integer.parseInt(cleanVal(line.split(":")[1]));
-        }
-				if (line.contains("status")) {
-					String statusStr = cleanVal(line.split(":")[1]);
-					status = Status.valueOf(statusStr);
-				}
-
-        if (line.contains("}")) {
-          Biopsy biopsy = new Biopsy(type, doctor, patient, status, id);
-					biopsy.setNotes(notes);
-          biopsies.put(id, biopsy);
-        }
-      }
-			sc.close();
-    } catch (FileNotFoundException e) {
-      e.printStackTrace();
-    }
-  }
-
-	private void parseChartJson(Scanner sc) {
-		String firstName = "";
-		String lastName = "";
-		Integer id = 0;
-		while (sc.hasNextLine()) {
-			String line = sc.nextLine();
-			String[] split;
-
-			if (line.contains("firstName")) {
-				split = line.split(":");
-				firstName = cleanVal(split[1]);
-			}
-			if (line.contains("lastName")) {
-				split = line.split(":");
-				lastName = cleanVal(split[1]);
-			}
-			if (line.contains("id")) {
-				split = line.split(":");
-				id = Integer.valueOf(cleanVal(split[1]));
-			}
-
-			if (line.contains("prevCharts")) {
-				Chart chart = new Chart();
-
-				while (sc.hasNextLine()) {
-					line = sc.nextLine();
-
-					if (line.contains("}")) {
-						charts.put(chart.getId(), chart);
-					}
-
-					if (line.contains("{")) {
-						chart = new Chart();
-						line = sc.nextLine();
-					}
-
-					if (line.contains("]") && !line.contains("[")) {
-						break;
-					}
-
-					chart.setPatient(new Patient(firstName, lastName, id));
-
-
-					if (line.contains("chartId")) {
-						split = line.split(":");
-						chart.setChartId(Integer.parseInt(split[1].strip().replace(",", "")));
-
-					} else if (line.contains("userIdIss")) {
-						split = line.split(":");
-						if(doctors.get(Integer.valueOf(cleanVal(split[1]))) != null) {
-							chart.setUser(doctors.get(Integer.valueOf(cleanVal(split[1]))));
-						} else if (nurses.get(Integer.valueOf(cleanVal(split[1]))) != null) {
-							chart.setUser(nurses.get(Integer.valueOf(cleanVal(split[1]))));
-						}
-
-					} else if (line.contains("dateIss")) {
-						split = line.split(":");
-						chart.setDate(split[1]);
-
-					} else if (line.contains("others")) {
-						split = line.split(":");
-						split = split[1].split(",");
-						for (int i = 0; i < split.length; i++) {
-							String otherId = cleanVal(split[i]);
-							if (otherId.isEmpty()) {
-								continue;
-							}
-
-							int p = Integer.parseInt(otherId);
-							if (doctors.get(p) != null) {
-								chart.addOthers(doctors.get(p));
-							} else if (nurses.get(p) != null) {
-								chart.addOthers(nurses.get(p));
-							}
-						}
-
-					} else if (line.contains("allergies")) {
-						split = line.split(":");
-						chart.addAllergies(split[1]);
-
-					} else if (line.contains("additionalNotes")) {
-						split = line.split(":");
-						chart.addNote(split[1]);
-					}
-				}
-			}
+	/** True when a data file was changed by something other than this instance since it loaded. */
+	public boolean isStale() {
+		return stamps.changed();
+	}
 
-			if (line.contains("}") && firstName != null) {
-				Patient patient = new Patient(firstName, lastName, id);
-				patients.put(id, patient);
+	public void close() {
+		for (Journal journal : List.of(biopsyJournal, sampleJournal, pcrJournal, chartJournal)) {
+			try {
+				journal.close();
+			} catch (IOException e) {
+				e.printStackTrace();
 			}
 		}
 	}
 
-	private void loadPCR() {
-		File file = new File("./src/diagnostic_services/file_system/Data/pcrs.json");
-
-		try {
-			Scanner sc = new Scanner(file);
-			this.parsePCR(sc);
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
+	/**
+	 * Builds the in-memory store from the parsed files. Staff and patients go
+	 * in first so charts, samples, PCRs and biopsies can look their ids up.
+	 */
+	private void resolve(DataLoader data) {
+		for (Doctor doctor : data.doctors) {
+			people.put(doctor);
+		}
+		for (Nurse nurse : data.nurses) {
+			people.put(nurse);
+		}
+		for (LabTech labTech : data.labTechs) {
+			people.put(labTech);
+		}
+		for (EMT emt : data.emts) {
+			people.put(emt);
+		}
+		for (DataLoader.RawPatient raw : data.patients) {
+			people.put(raw.patient());
+			chartArchive.index(raw.patient().getId(), raw.chartsAt(), raw.chartCount());
+		}
+		chartIds.observe(data.lastChartId);
+		for (DataLoader.RawChart raw : data.journaledCharts) {
+			// Ids past the file's highest were created after it was written; anything else is an edit.
+			chartArchive.journaled(raw, raw.chartId() > data.lastChartId);
+			chartIds.observe(raw.chartId());
 		}
-	}
-
-	private void parseSamples(Scanner sc) {
-		int id = 0;
-		String sampleType = "";
-		int patientId = 0;
-		LinkedHashMap<String, String> result = new LinkedHashMap<>();
-		Status status = Status.PENDING;
-
-		while (sc.hasNextLine()) {
-			String str = sc.nextLine();
-
-			if (str.contains("id\":")) {
-				id = Integer.parseInt(cleanVal(str.split(":")[1]));
-
-			} else if (str.contains("sampleType\":")) {
-				sampleType = this.cleanVal(str.split(":")[1]);
-
-			} else if (str.contains("status\":")) {
-				status = Status.valueOf(cleanVal(str.split(":")[1]));
-
-			} else if (str.contains("patient\":")) {
-				patientId = Integer.parseInt(cleanVal(str.split(":")[1]));
 
-			} else if (str.contains("results\":")) {
-				String temp = str.substring(13);
-				String[] tempList = temp.split(",");
+		for (DataLoader.RawSample raw : data.samples) {
+			Patient patient = getPatientById(raw.patientId());
+			Sample sample = new Sample(raw.id(), raw.sampleType(), raw.status(), patient, raw.results(), sampleResults);
+			sample.setPriority(raw.priority());
+			sample.getStatusTimes().load(raw.statusTimes());
+			sample.setClaimedBy(raw.claimedBy());
+			sample.clearDirty();
+			this.recordTurnaround(sample);
+			samples.put(raw.id(), sample);
+			sampleIds.observe(raw.id());
+			labWorklist.add(sample);
+		}
 
-				for (String pair : tempList) {
-					if (pair.contains(":")) {
-						String key = cleanVal(pair.split(":")[0]);
-						String value = cleanVal(pair.split(":")[1]);
-						result.put(key, value);
-					}
-				}
-			}
+		for (DataLoader.RawPCR raw : data.pcrs) {
+			Ambulance ambulance = new Ambulance(getEMTById(raw.emtId1()), getEMTById(raw.emtId2()));
+			PCR pcr = new PCR(raw.id(), ambulance, getPatientById(raw.patientId()), raw.notes());
+			pcr.clearDirty();
+			pcrs.put(raw.id(), pcr);
+			pcrIds.observe(raw.id());
+		}
 
-			if (str.contains("}")) {
-				Patient patient = patients.get(patientId); patientId = 0;
-				Sample sample = new Sample(id, sampleType, status, patient, result);
-				samples.put(samples.size() + 1, sample);
-				result = new LinkedHashMap<>();
-			}
+		for (DataLoader.RawBiopsy raw : data.biopsies) {
+			Biopsy biopsy = new Biopsy(raw.type(), getDoctorById(raw.doctorId()), getPatientById(raw.patientId()), raw.status(), raw.id());
+			biopsy.setNotes(raw.notes());
+			biopsy.getStatusTimes().load(raw.statusTimes());
+			biopsy.clearDirty();
+			this.recordTurnaround(biopsy);
+			biopsies.put(raw.id(), biopsy);
+			biopsyIndex.update(biopsy);
 		}
+		biopsyIds.observe(data.lastBiopsyId);
 	}
 
-	private void loadStaff() {
-		File file = new File(PATH_DOC);
-
-		for(int i = 0; i < 5; i++) {
-			switch (i) {
-				case 0 -> file = new File(PATH_DOC);
-				case 1 -> file = new File(PATH_NUR);
-				case 2 -> file = new File(PATH_LAB);
-				case 3 -> file = new File(PATH_EMT);
-			}
-			try {
-				Scanner sc = new Scanner(file);
-				this.parsePeople(sc, i);
-			} catch (FileNotFoundException e) {
-				e.printStackTrace();
+	private Chart toChart(Patient patient, DataLoader.RawChart raw) {
+		Chart chart = new Chart();
+		chart.setChartId(raw.chartId());
+		chart.setPatient(patient);
+		chart.setUser(this.getProviderById(raw.userId()));
+		if (raw.issued() != ChartDates.NONE) {
+			chart.setIssued(raw.issued());
+		} else if (raw.unreadDate() != null) {
+			chart.setDate(raw.unreadDate());
+		}
+		for (int otherId : raw.others()) {
+			HealthCareProvider other = this.getProviderById(otherId);
+			if (other != null) {
+				chart.addOthers(other);
 			}
 		}
+		chart.addAllergies(raw.allergies());
+		chart.addNote(raw.notes());
+		chart.clearDirty();
+		return chart;
 	}
 
-	private void parsePeople(Scanner sc, int type) {
-		String firstName = "";
-		String lastName = "";
-		int id = 0;
-		Doctor.Specialty specialty = null;
-
-		while (sc.hasNextLine()) {
-			String str = sc.nextLine();
-
-			if (str.contains("firstName")) {
-				firstName = cleanVal(str.split(":")[1]);
-			}
-			if (str.contains("lastName")) {
-				lastName = cleanVal(str.split(":")[1]);
-			}
-			if (str.contains("id")) {
-				id = Integer.parseInt(cleanVal(str.split(":")[1]));
-			}
-      if (str.contains("specialty")) {
-				String special = cleanVal(str.split(":")[1]);
-        specialty = Doctor.Specialty.valueOf(special);
-      }
-
-			if (str.contains("}")) {
-				switch(type) {
-					case 0 -> {
-						// Doctor
-						Doctor doctor = new Doctor(firstName, lastName, id, specialty);
-						doctors.put(id, doctor);
-					}
-					case 1 -> {
-						// Nurse
-						Nurse nurse = new Nurse(firstName, lastName, id);
-						nurses.put(id, nurse);
-					}
-					case 2 -> {
-						// Patient
-						Patient patient = new Patient(firstName, lastName, id);
-						patients.put(id, patient);
-					}
-					case 3 -> {
-						// LabTech
-						LabTech labTech = new LabTech(firstName, lastName, id);
-						labTechs.put(id, labTech);
-					}
-					case 4 -> {
-						// EMT
-						EMT emt = new EMT(firstName, lastName, id);
-						emts.put(id, emt);
-					}
-				}
-			}
+	private static DataLoader.RawChart toRaw(Chart chart) {
+		ArrayList<HealthCareProvider> others = chart.getOthers();
+		int[] otherIds = new int[others.size()];
+		for (int i = 0; i < otherIds.length; i++) {
+			otherIds[i] = others.get(i).getId();
 		}
+		return new DataLoader.RawChart(chart.getPatient().getId(), chart.getId(), chart.getUser() == null ? 0 : chart.getUser().getId(),
+				chart.getIssued(), chart.getUnreadDate(), otherIds, chart.getAllergies(), chart.getNotes());
 	}
 
-	private void loadSamples() {
-		File file = new File("./src/diagnostic_services/file_system/Data/samples.json");
-
+	/** The patient's chart history, read from patients.json on first use. */
+	public List<Chart> getChartsByPatientId(int patientId) {
+		Patient patient = getPatientById(patientId);
+		if (patient == null) {
+			return List.of();
+		}
 		try {
-			Scanner sc = new Scanner(file);
-			this.parseSamples(sc);
-		} catch (FileNotFoundException e) {
+			return chartArchive.copyOfHistory(patient);
+		} catch (IOException e) {
 			e.printStackTrace();
+			return List.of();
 		}
 	}
 
-	private void parsePCR(Scanner sc) {
-		int id = 0;
-			int patientId = 0;
-			int emtId1 = 0;
-			int emtId2 = 0;
-			String notes = "";
-
-		while (sc.hasNextLine()) {
-			String str = sc.nextLine();
-
-			if (str.contains("id")) {
-				id = Integer.parseInt(cleanVal(str.split(":")[1]));
-			}
-
-			if (str.contains("patient")) {
-				patientId = Integer.parseInt(cleanVal(str.split(":")[1]));
-			}
-
-			if (str.contains("emts")) {
-				String[] emtIds = str.split(":")[1].split(",");
-				emtId1 = Integer.parseInt(cleanVal(emtIds[0]));
-				emtId2 = Integer.parseInt(cleanVal(emtIds[1]));
-			}
-
-			if (str.contains("notes")) {
-				notes = cleanVal(str.split(":")[1]);
-			}
-
-			if (str.contains("}")) {
-				EMT emt1 = emts.get(emtId1);
-				EMT emt2 = emts.get(emtId2);
-				Ambulance ambulance = new Ambulance(emt1, emt2);
-				Patient patient = patients.get(patientId);
-				PCR pcr = new PCR(id, ambulance, patient, notes);
-				pcrs.put(id, pcr);
-			}
-		}
+	private HealthCareProvider getProviderById(int id) {
+		return (HealthCareProvider) people.getAny(id, PersonRegistry.PROVIDER);
 	}
 
 	public boolean isDoctor(int id) {
-		return doctors.containsKey(id);
+		return people.has(id, PersonRegistry.Role.DOCTOR);
 	}
 
 	public boolean isNurse(int id) {
-		return nurses.containsKey(id);
+		return people.has(id, PersonRegistry.Role.NURSE);
 	}
 
 	public boolean isLabTech(int id) {
-		return labTechs.containsKey(id);
+		return people.has(id, PersonRegistry.Role.LAB_TECH);
 	}
 
 	public boolean isEMT(int id) {
-		return emts.containsKey(id);
+		return people.has(id, PersonRegistry.Role.EMT);
 	}
 
 	public boolean isHealthCareProvider(int userId) {
-		return (doctors.containsKey(userId) || nurses.containsKey(userId));
+		return people.hasAny(userId, PersonRegistry.PROVIDER);
 	}
 
 	public void displaySample() {
@@ -415,27 +259,32 @@ public class FilerSystem {
 		System.out.println(samples.get(id));
 	}
 
-	public void submitChart(int id, Scanner sc) {
-		HealthCareProvider user;
-		Patient patient;
+	public Sample getSampleById(int id) {
+		return samples.get(id);
+	}
 
-		if (doctors.containsKey(id)) {
-			user = doctors.get(id);
-		} else if (nurses.containsKey(id)) {
-			user = nurses.get(id);
-		} else {
+	/** The result table shared by this system's samples of the given type, or null if there are none. */
+	public SampleResults getSampleResults(String sampleType) {
+		return sampleResults.get(sampleType);
+	}
+
+	public PCR getPCRById(int id) {
+		return pcrs.get(id);
+	}
+
+	public void submitChart(int id, Scanner sc) {
+		if (getProviderById(id) == null) {
 			System.out.println("Invalid user.");
 			return;
 		}
 
+		int patientId;
 		while (true) {
 				System.out.print("Patient id: ");
 				String in = sc.nextLine();
-				int patientId;
 
 				patientId = Integer.parseInt(in);
-				if (patients.containsKey(patientId)) {
-					patient = patients.get(patientId);
+				if (people.has(patientId, PersonRegistry.Role.PATIENT)) {
 					break;
 				} else if (in.equalsIgnoreCase("exit")) {
 					return;
@@ -444,20 +293,49 @@ public class FilerSystem {
 				}
 		}
 
-		Chart chart = new Chart(user, patient, PATH_DOC);
-
 		System.out.println("Please enter any allegeries. (Do not use semicolons).");
 		String allergies = sc.nextLine();
-		chart.addAllergies(allergies);
 
 		System.out.println("Please enter any additional notes. (Do not use semicolons).");
 		String notes = sc.nextLine();
-		chart.addNote(notes);
 
-		chart.setChartId(charts.size() + 1);
-		charts.put(chart.getId(), chart);
+		if (createChart(id, patientId, allergies, notes) != null) {
+			System.out.println("Chart submitted successfully!\n");
+		}
+	}
+
+	/** Files a new chart; returns null if the user or patient is unknown or it could not be stored. */
+	public Chart createChart(int userId, int patientId, String allergies, String notes) {
+		HealthCareProvider user = getProviderById(userId);
+		Patient patient = getPatientById(patientId);
+		if (user == null || patient == null) {
+			return null;
+		}
+
+		Chart chart = new Chart(user, patient, notes);
+		chart.addAllergies(allergies);
+		chart.setIssued(ChartDates.today());
+		chart.setChartId(chartIds.next());
 
-		System.out.println("Chart submitted successfully!\n");
+		patientsLock.lock();
+		try {
+			chartArchive.add(chart);
+			if (chartSearch != null) {
+				chartSearch.add(patientId, chart.getId(), allergies, notes);
+			}
+			if (providerCharts != null) {
+				providerCharts.add(chart.getId(), patientId, chart.getIssued(), userId, new int[0]);
+			}
+			if (chartTimes != null) {
+				chartTimes.add(patientId, chart.getId(), chart.getIssued());
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			patientsLock.unlock();
+		}
+		return chart;
 	}
 
   public void submitSample(Scanner sc) {
@@ -471,8 +349,8 @@ public class FilerSystem {
 
 			if (in.equalsIgnoreCase("exit")) {
 				return;
-			} else if (patients.containsKey(patientId)) {
-				patient = patients.get(patientId);
+			} else if (people.has(patientId, PersonRegistry.Role.PATIENT)) {
+				patient = getPatientById(patientId);
 				break;
 			} else {
 				System.out.println("Invalid patient id, please try again or type 'exit' to cancel.\n");
@@ -482,42 +360,330 @@ public class FilerSystem {
 		System.out.println("Input sample type: ");
 		sampleType = sc.nextLine();
 
-		Sample sample = new Sample(samples.size() + 1, sampleType, patient);
+		System.out.println("Is this a STAT sample? (Y/N)");
+		Sample.Priority priority = sc.nextLine().equalsIgnoreCase("Y") ? Sample.Priority.STAT : Sample.Priority.ROUTINE;
 
-		LinkedHashMap<String, String> results = new LinkedHashMap<>();
+		List<String> fields = new ArrayList<>();
 		while (true) {
 				System.out.println("Enter fields you would like to add to result. Press enter to stop.");
 				String field = sc.nextLine();
 				if (field.isBlank()) {
 					break;
 				}
-				results.put(field, "NULL");
+				fields.add(field);
 		}
-    sample.setResults(results);
-    samples.put(sample.getId(), sample);
+    createSample(patient.getId(), sampleType, priority, fields);
   }
 
-	public void editSample(int id) {
+	/** Files a new pending sample with the given result fields left blank; null if the patient is unknown. */
+	public Sample createSample(int patientId, String sampleType, Sample.Priority priority, List<String> fields) {
+		Patient patient = getPatientById(patientId);
+		if (patient == null) {
+			return null;
+		}
+
+		Sample sample = new Sample(sampleIds.next(), sampleType, patient, sampleResults);
+		sample.setPriority(priority);
+		LinkedHashMap<String, String> results = new LinkedHashMap<>();
+		for (String field : fields) {
+			results.put(field, "NULL");
+		}
+		sample.setResults(results);
+		samples.put(sample.getId(), sample);
+		labWorklist.add(sample);
+		return sample;
+	}
+
+	public void editSample(int id, int techId) {
 		Sample sample = samples.get(id);
-		sample.setStatus(Status.IN_PROGRESS);
+		if (sample == null) {
+			System.out.println("No sample with id " + id + ".\n");
+		} else if (!labWorklist.claim(sample, techId)) {
+			System.out.println("Sample " + id + " is " + sample.getStatus() + " and cannot be claimed.\n");
+		}
 	}
 
-	public void completeSample(int id) {
+	public void completeSample(int id, int techId) {
 		Sample sample = samples.get(id);
-		sample.setStatus(Status.COMPLETED);
+		if (sample == null) {
+			System.out.println("No sample with id " + id + ".\n");
+		} else if (!labWorklist.complete(sample, techId)) {
+			System.out.println("Sample " + id + " is not in progress under your id.\n");
+		} else {
+			this.recordTurnaround(sample);
+		}
+	}
+
+	public TurnaroundMetrics getTurnaroundMetrics() {
+		return turnaround;
+	}
+
+	public void displayTurnaround() {
+		System.out.println("PENDING to COMPLETED turnaround");
+		turnaround.display();
+	}
+
+	private void recordTurnaround(Sample sample) {
+		if (sample.getStatus() == Status.COMPLETED) {
+			long millis = sample.getStatusTimes().between(Status.PENDING, Status.COMPLETED);
+			if (millis >= 0) {
+				turnaround.recordSample(sample.getSampleType(), millis);
+			}
+		}
+	}
+
+	private void recordTurnaround(Biopsy biopsy) {
+		if (biopsy.getStatus() == Status.COMPLETED) {
+			long millis = biopsy.getStatusTimes().between(Status.PENDING, Status.COMPLETED);
+			if (millis >= 0) {
+				turnaround.recordBiopsy(biopsy.getType(), millis);
+			}
+		}
 	}
 
 	public void cancelSample(int id) {
 		Sample sample = samples.get(id);
-		sample.setStatus(Status.CANCELLED);
+		if (sample == null) {
+			System.out.println("No sample with id " + id + ".\n");
+		} else if (!labWorklist.cancel(sample)) {
+			System.out.println("Sample " + id + " is already " + sample.getStatus() + ".\n");
+		}
+	}
+
+	/** Claims the next pending sample for the tech, STAT samples first. */
+	public Sample claimNextSample(int techId) {
+		return labWorklist.claimNext(techId);
 	}
 
+	/** Streams every chart from the archive without keeping the histories around. */
 	public void displayCharts() {
-		for (Integer key : charts.keySet()) {
-			System.out.println(charts.get(key));
+		try {
+			chartArchive.scan((patientId, live, stored) -> {
+				if (live != null) {
+					for (Chart chart : live) {
+						System.out.println(chart);
+					}
+					return;
+				}
+				Patient patient = getPatientById(patientId);
+				for (DataLoader.RawChart raw : stored) {
+					System.out.println(toChart(patient, raw));
+				}
+			});
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		System.out.println("Total amount of charts: " + chartArchive.size() + "\n");
+	}
+
+	/** Ids of the matching charts, answered from the index alone. */
+	public int[] searchChartIds(String query) {
+		try {
+			return this.chartSearch().search(query);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return new int[0];
+		}
+	}
+
+	/** Charts whose notes or allergies match the query; see {@link ChartSearchIndex} for the syntax. */
+	public List<Chart> searchCharts(String query) {
+		try {
+			ChartSearchIndex index = this.chartSearch();
+			return this.loadCharts(index.search(query), index::patientOf);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return new ArrayList<>();
+		}
+	}
+
+	/**
+	 * The charts with the given ids, in that order. Small sets open each
+	 * patient's history; larger ones would churn the history cache, so the
+	 * charts are picked out of a single pass instead.
+	 */
+	private List<Chart> loadCharts(int[] chartIds, IntUnaryOperator patientOf) throws IOException {
+		List<Chart> found = new ArrayList<>(chartIds.length);
+		if (chartIds.length <= CHART_CACHE_SIZE) {
+			for (int chartId : chartIds) {
+				for (Chart chart : this.getChartsByPatientId(patientOf.applyAsInt(chartId))) {
+					if (chart.getId() == chartId) {
+						found.add(chart);
+						break;
+					}
+				}
+			}
+			return found;
+		}
+
+		int[] sorted = chartIds.clone();
+		Arrays.sort(sorted);
+		HashMap<Integer, Chart> byId = new HashMap<>();
+		chartArchive.scan((patientId, live, stored) -> {
+			if (live != null) {
+				for (Chart chart : live) {
+					if (Arrays.binarySearch(sorted, chart.getId()) >= 0) {
+						byId.put(chart.getId(), chart);
+					}
+				}
+			} else {
+				for (DataLoader.RawChart raw : stored) {
+					if (Arrays.binarySearch(sorted, raw.chartId()) >= 0) {
+						byId.put(raw.chartId(), toChart(getPatientById(patientId), raw));
+					}
+				}
+			}
+		});
+		for (int chartId : chartIds) {
+			Chart chart = byId.get(chartId);
+			if (chart != null) {
+				found.add(chart);
+			}
+		}
+		return found;
+	}
+
+	public void displayChartSearch(String query) {
+		List<Chart> found = searchCharts(query);
+		for (Chart chart : found) {
+			System.out.println(chart);
+		}
+		System.out.println("Charts found: " + found.size() + "\n");
+	}
+
+	/** Built from one pass over the archive the first time anyone searches. */
+	private ChartSearchIndex chartSearch() throws IOException {
+		patientsLock.lock();
+		try {
+			return this.buildChartSearch();
+		} finally {
+			patientsLock.unlock();
+		}
+	}
+
+	private ChartSearchIndex buildChartSearch() throws IOException {
+		if (chartSearch == null) {
+			ChartSearchIndex index = new ChartSearchIndex();
+			chartArchive.scan((patientId, live, stored) -> {
+				if (live != null) {
+					for (Chart chart : live) {
+						index.add(patientId, chart.getId(), chart.getAllergies(), chart.getNotes());
+					}
+				} else {
+					for (DataLoader.RawChart raw : stored) {
+						index.add(patientId, raw.chartId(), raw.allergies(), raw.notes());
+					}
+				}
+			});
+			chartSearch = index;
+		}
+		return chartSearch;
+	}
+
+	/**
+	 * Every chart the provider issued or co-signed, newest issue date first
+	 * when {@code byDate}, otherwise in the order they were filed.
+	 */
+	public List<Chart> getChartsByProviderId(int providerId, boolean byDate) {
+		try {
+			List<ProviderChartIndex.Entry> entries = this.providerCharts().charts(providerId, byDate);
+			int[] chartIds = new int[entries.size()];
+			HashMap<Integer, Integer> patientOf = new HashMap<>();
+			for (int i = 0; i < chartIds.length; i++) {
+				chartIds[i] = entries.get(i).chartId();
+				patientOf.put(chartIds[i], entries.get(i).patientId());
+			}
+			return this.loadCharts(chartIds, patientOf::get);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return new ArrayList<>();
+		}
+	}
+
+	public void displayChartsByProvider(int providerId) {
+		List<Chart> charts = getChartsByProviderId(providerId, true);
+		for (Chart chart : charts) {
+			System.out.println(chart);
+		}
+		System.out.println("Charts issued or co-signed: " + charts.size() + "\n");
+	}
+
+	/** Built from one pass over the archive the first time anyone asks for a caseload. */
+	private ProviderChartIndex providerCharts() throws IOException {
+		patientsLock.lock();
+		try {
+			if (providerCharts == null) {
+				ProviderChartIndex index = new ProviderChartIndex();
+				chartArchive.scan((patientId, live, stored) -> {
+					if (live != null) {
+						for (Chart chart : live) {
+							DataLoader.RawChart raw = toRaw(chart);
+							index.add(raw.chartId(), patientId, raw.issued(), raw.userId(), raw.others());
+						}
+					} else {
+						for (DataLoader.RawChart raw : stored) {
+							index.add(raw.chartId(), patientId, raw.issued(), raw.userId(), raw.others());
+						}
+					}
+				});
+				providerCharts = index;
+			}
+			return providerCharts;
+		} finally {
+			patientsLock.unlock();
+		}
+	}
+
+	/** Charts issued from {@code from} to {@code to} inclusive, oldest first. */
+	public List<Chart> getChartsIssuedBetween(LocalDate from, LocalDate to) {
+		try {
+			ChartTimeIndex index = this.chartTimes();
+			return this.loadCharts(index.between(ChartDates.of(from), ChartDates.of(to)), index::patientOf);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return new ArrayList<>();
+		}
+	}
+
+	/** Charts issued today or in the {@code days} days before; 3 covers the last 72 hours. */
+	public List<Chart> getRecentCharts(int days) {
+		LocalDate today = LocalDate.now();
+		return getChartsIssuedBetween(today.minusDays(days), today);
+	}
+
+	public void displayChartsIssuedBetween(LocalDate from, LocalDate to) {
+		List<Chart> charts = getChartsIssuedBetween(from, to);
+		for (Chart chart : charts) {
+			System.out.println(chart);
 		}
+		System.out.println("Charts issued " + ChartDates.format(ChartDates.of(from)) + " to "
+				+ ChartDates.format(ChartDates.of(to)) + ": " + charts.size() + "\n");
+	}
 
-		System.out.println("Total amount of charts: " + charts.size() + "\n");
+	/** Built from one pass over the archive the first time anyone asks for a date range. */
+	private ChartTimeIndex chartTimes() throws IOException {
+		patientsLock.lock();
+		try {
+			if (chartTimes == null) {
+				ChartTimeIndex index = new ChartTimeIndex();
+				chartArchive.scan((patientId, live, stored) -> {
+					if (live != null) {
+						for (Chart chart : live) {
+							index.add(patientId, chart.getId(), chart.getIssued());
+						}
+					} else {
+						for (DataLoader.RawChart raw : stored) {
+							index.add(patientId, raw.chartId(), raw.issued());
+						}
+					}
+				});
+				chartTimes = index;
+			}
+			return chartTimes;
+		} finally {
+			patientsLock.unlock();
+		}
 	}
 
 	public void displayPCR(int id) {
@@ -540,7 +706,9 @@ public class FilerSystem {
 		String notes = sc.nextLine();
 
 		if (!notes.isEmpty()) {
-			pcr.setNotes(pcr.getNotes() + " " + notes);
+			synchronized (pcr) {
+				pcr.setNotes(pcr.getNotes() + " " + notes);
+			}
 		}
 
 		System.out.print("PCR enter patient id or 'enter' to skip: ");
@@ -548,20 +716,20 @@ public class FilerSystem {
 
 		if (!in.isBlank()) {
 			int patientId = Integer.parseInt(in);
-			Patient patient = patients.get(patientId);
+			Patient patient = getPatientById(patientId);
 			pcr.setPatient(patient);
 		}
   }
 
   public void createPCR(int emtId, Scanner sc) {
-		EMT emt1 = emts.get(emtId);
+		EMT emt1 = getEMTById(emtId);
 
 		while (true) {
 			System.out.println("Enter the second EMT's ID: ");
 
 			try {
 					emtId = Integer.parseInt(sc.nextLine());
-					if (!emts.containsKey(emtId)) {
+					if (!people.has(emtId, PersonRegistry.Role.EMT)) {
 						System.out.println("Invalid id, please try again.");
 						continue;
 					}
@@ -571,15 +739,89 @@ public class FilerSystem {
 			}
 		}
 
-		EMT emt2 = emts.get(emtId);
+		createPCR(emt1.getId(), emtId);
+		System.out.println();
+  }
 
+	/** Opens an empty PCR for an ambulance crew; null if either id is not an EMT. */
+	public PCR createPCR(int emtId1, int emtId2) {
+		EMT emt1 = getEMTById(emtId1);
+		EMT emt2 = getEMTById(emtId2);
+		if (emt1 == null || emt2 == null) {
+			return null;
+		}
 
-    PCR pcr = new PCR(emt1, emt2);
-		pcr.setId(pcrs.size() + 1);
+		PCR pcr = new PCR(emt1, emt2);
+		pcr.setId(pcrIds.next());
 		pcrs.put(pcr.getId(), pcr);
+		return pcr;
+	}
 
-		System.out.println();
-  }
+	/** Outcome of {@link #ingestPCRs}: the ids given to accepted lines in input order, and why each other line was refused. */
+	public record PCRBatch(List<Integer> ids, List<String> rejected) {}
+
+	/**
+	 * Files PCRs sent in bulk by ambulance crews, one JSON object per line:
+	 * {@code {"emts": [id, id], "patient": id, "notes": "..."}}, where the
+	 * patient may be left out. Every line is checked before anything is
+	 * filed; the accepted PCRs take a block of consecutive ids and are
+	 * written in one journal append, becoming visible only once it succeeds.
+	 */
+	public PCRBatch ingestPCRs(Reader ndjson) throws IOException {
+		List<DataLoader.RawPCR> valid = new ArrayList<>();
+		List<String> rejected = new ArrayList<>();
+		BufferedReader lines = new BufferedReader(ndjson);
+		List<DataLoader.RawPCR> parsed = new ArrayList<>(1);
+		String line;
+		for (int n = 1; (line = lines.readLine()) != null; n++) {
+			if (line.isBlank()) {
+				continue;
+			}
+			parsed.clear();
+			try (JsonReader reader = new JsonReader(line)) {
+				DataLoader.parsePCRs(reader, parsed);
+			} catch (IOException | IllegalArgumentException e) {
+				rejected.add("line " + n + ": unreadable record (" + e.getMessage() + ")");
+				continue;
+			}
+			DataLoader.RawPCR raw = parsed.get(0);
+			if (!people.has(raw.emtId1(), PersonRegistry.Role.EMT) || !people.has(raw.emtId2(), PersonRegistry.Role.EMT)) {
+				rejected.add("line " + n + ": unknown EMT in " + raw.emtId1() + ", " + raw.emtId2());
+			} else if (raw.patientId() != 0 && !people.has(raw.patientId(), PersonRegistry.Role.PATIENT)) {
+				rejected.add("line " + n + ": unknown patient " + raw.patientId());
+			} else {
+				valid.add(raw);
+			}
+		}
+
+		List<Integer> ids = new ArrayList<>(valid.size());
+		if (valid.isEmpty()) {
+			return new PCRBatch(ids, rejected);
+		}
+		List<PCR> filed = new ArrayList<>(valid.size());
+		List<String> records = new ArrayList<>(valid.size());
+		pcrsLock.lock();
+		try {
+			int first = pcrIds.reserve(valid.size());
+			for (DataLoader.RawPCR raw : valid) {
+				Ambulance ambulance = new Ambulance(getEMTById(raw.emtId1()), getEMTById(raw.emtId2()));
+				PCR pcr = new PCR(first + filed.size(), ambulance, getPatientById(raw.patientId()), raw.notes());
+				DataLoader.RawPCR stored = toRaw(pcr);
+				records.add(record(json -> writePCRFields(json, stored)));
+				filed.add(pcr);
+			}
+			pcrJournal.appendAll(records);
+			for (PCR pcr : filed) {
+				pcr.clearDirty();
+				pcrs.put(pcr.getId(), pcr);
+				ids.add(pcr.getId());
+			}
+			compactPCRs();
+		} finally {
+			pcrsLock.unlock();
+		}
+		return new PCRBatch(ids, rejected);
+	}
 
 	public void displayBiopsies() {
     for (Biopsy biopsy : biopsies.values()) {
@@ -589,194 +831,460 @@ public class FilerSystem {
     System.out.println("Total Biopsies: " + biopsies.size());
   }
 
-	public void displayBiopsiesByUserId(int id) {
-		boolean found = false;
-		Doctor doctor = doctors.get(id);
-		for (Biopsy biopsy : biopsies.values()) {
-			if (doctor.getCategory() == biopsy.getType()) {
-				found = true;
-				System.out.println(biopsy);
-			}
+	/**
+	 * Prints one page of the biopsies in the doctor's field, starting after
+	 * {@code afterId}. Returns the id to continue from, or -1 once the
+	 * worklist is exhausted.
+	 */
+	public int displayBiopsiesByUserId(int id, int afterId, int pageSize) {
+		Doctor doctor = getDoctorById(id);
+		if (doctor == null) {
+			System.out.println("Only doctors have a biopsy worklist.\n");
+			return -1;
+		}
+
+		List<Biopsy> page = biopsyIndex.page(doctor.getCategory(), null, afterId, pageSize);
+		for (Biopsy biopsy : page) {
+			System.out.println(biopsy);
 		}
-		if (!found) {
+		if (page.isEmpty() && afterId == 0) {
 			System.out.println("There are no biopsies of your field.");
 		}
 		System.out.println("");
+
+		if (page.size() < pageSize) {
+			return -1;
+		}
+		return page.get(page.size() - 1).getId();
+	}
+
+	public List<Biopsy> getBiopsyWorklist(Biopsy.Category category, Status status, int afterId, int limit) {
+		return biopsyIndex.page(category, status, afterId, limit);
+	}
+
+	public int countBiopsies(Biopsy.Category category, Status status) {
+		return biopsyIndex.count(category, status);
+	}
+
+	public void setBiopsyStatus(Biopsy biopsy, Status status) {
+		biopsiesLock.lock();
+		try {
+			boolean completes = status == Status.COMPLETED && biopsy.getStatus() != Status.COMPLETED;
+			biopsy.setStatus(status);
+			if (biopsies.get(biopsy.getId()) == biopsy) {
+				biopsyIndex.update(biopsy);
+			}
+			if (completes) {
+				this.recordTurnaround(biopsy);
+			}
+		} finally {
+			biopsiesLock.unlock();
+		}
 	}
 
 	public Doctor getDoctorById(int id) {
-    return doctors.get(id);
+    return (Doctor) people.get(id, PersonRegistry.Role.DOCTOR);
   }
 
 	public Patient getPatientById(int id) {
-    return patients.get(id);
+    return (Patient) people.get(id, PersonRegistry.Role.PATIENT);
   }
 
+	private EMT getEMTById(int id) {
+		return (EMT) people.get(id, PersonRegistry.Role.EMT);
+	}
+
+	/** Bitmask of {@link PersonRegistry.Role#bit()} values the id holds; 0 for an unknown id. */
+	public int getRoles(int id) {
+		return people.roles(id);
+	}
+
+	/**
+	 * Journals every chart, sample, PCR and biopsy changed since the last
+	 * save. Unchanged records cost nothing, and a file with no changes is
+	 * not touched.
+	 */
 	public void saveData() {
-		writePatients();
-		writeSamples();
-		writePCRs();
+		saveCharts();
+		saveSamples();
+		savePCRs();
+		saveBiopsies();
+	}
+
+	private void saveCharts() {
+		patientsLock.lock();
+		try {
+			List<String> records = new ArrayList<>();
+			List<DataLoader.RawChart> saved = new ArrayList<>();
+			for (Chart chart : chartArchive.takeDirty()) {
+				DataLoader.RawChart raw = toRaw(chart);
+				records.add(record(json -> writeChartFields(json, raw)));
+				saved.add(raw);
+			}
+			if (records.isEmpty()) {
+				return;
+			}
+			chartJournal.appendAll(records);
+			for (DataLoader.RawChart raw : saved) {
+				chartArchive.journaled(raw, false);
+			}
+			chartArchive.unpin();
+
+			if (chartJournal.needsCompaction()) {
+				this.writePatients();
+				chartJournal.clear();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			patientsLock.unlock();
+		}
+	}
+
+	private void saveSamples() {
+		samplesLock.lock();
+		try {
+			List<String> records = new ArrayList<>();
+			for (Sample sample : samples.values()) {
+				if (sample.clearDirty()) {
+					DataLoader.RawSample raw = toRaw(sample);
+					records.add(record(json -> writeSampleFields(json, raw)));
+				}
+			}
+			sampleJournal.appendAll(records);
+			if (sampleJournal.needsCompaction()) {
+				ArrayList<DataLoader.RawSample> copy = new ArrayList<>(samples.size());
+				for (Sample sample : samples.values()) {
+					copy.add(toRaw(sample));
+				}
+				sampleJournal.compact(out -> writeSamples(out, copy));
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			samplesLock.unlock();
+		}
+	}
+
+	private void savePCRs() {
+		pcrsLock.lock();
+		try {
+			List<String> records = new ArrayList<>();
+			for (PCR pcr : pcrs.values()) {
+				if (pcr.clearDirty()) {
+					DataLoader.RawPCR raw = toRaw(pcr);
+					records.add(record(json -> writePCRFields(json, raw)));
+				}
+			}
+			pcrJournal.appendAll(records);
+			compactPCRs();
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			pcrsLock.unlock();
+		}
+	}
+
+	/** Called holding pcrsLock. */
+	private void compactPCRs() throws IOException {
+		if (pcrJournal.needsCompaction()) {
+			ArrayList<DataLoader.RawPCR> copy = new ArrayList<>(pcrs.size());
+			for (PCR pcr : pcrs.values()) {
+				copy.add(toRaw(pcr));
+			}
+			pcrJournal.compact(out -> writePCRs(out, copy));
+		}
+	}
+
+	/** Biopsies are journaled by {@link #save}; this picks up edits made without it, like status changes. */
+	private void saveBiopsies() {
+		biopsiesLock.lock();
+		try {
+			List<String> records = new ArrayList<>();
+			for (Biopsy biopsy : biopsies.values()) {
+				if (biopsy.clearDirty()) {
+					records.add(saveRecord(biopsy));
+				}
+			}
+			biopsyJournal.appendAll(records);
+			compactBiopsies();
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			biopsiesLock.unlock();
+		}
 	}
 
 	public Biopsy getBiopsyById(int id) {
 		return biopsies.get(id);
 	}
 
+	/**
+	 * Deletes are tombstones in the journal; other biopsies keep their ids
+	 * and the deleted id is never handed out again.
+	 */
 	public void deleteBiopsy(int id) {
-    biopsies.remove(id);
-    reindexBiopsies();
-		writeBiopsies();
-  }
-
-	private void reindexBiopsies() {
-    LinkedHashMap<Integer, Biopsy> reindexed = new LinkedHashMap<>();
-    int newId = 1;
-    for (Biopsy biopsy : biopsies.values()) {
-      biopsy.setId(newId);
-      reindexed.put(newId, biopsy);
-      newId++;
+    biopsiesLock.lock();
+    try {
+      Biopsy removed = biopsies.remove(id);
+      if (removed == null) {
+        return;
+      }
+      biopsyIndex.remove(removed);
+      try {
+        biopsyJournal.append(deleteRecord(id));
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      compactBiopsies();
+    } finally {
+      biopsiesLock.unlock();
     }
-    biopsies.clear();
-    biopsies.putAll(reindexed);
   }
 
 	public void save(Biopsy biopsy) {
-		if (biopsy.getId() == 0) {
-			int nextId = biopsies.isEmpty() ? 1 : biopsies.size() + 1;
-			biopsy.setId(nextId);
-		}
+		biopsiesLock.lock();
+		try {
+			if (biopsy.getId() == 0) {
+				biopsy.setId(biopsyIds.next());
+			} else {
+				biopsyIds.observe(biopsy.getId());
+			}
 
-		biopsies.put(biopsy.getId(), biopsy);
+			Biopsy previous = biopsies.put(biopsy.getId(), biopsy);
+			if (previous != null && previous != biopsy) {
+				biopsyIndex.remove(previous);
+			}
+			biopsyIndex.update(biopsy);
+			biopsy.clearDirty();
+			try {
+				biopsyJournal.append(saveRecord(biopsy));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			compactBiopsies();
+		} finally {
+			biopsiesLock.unlock();
+		}
 		System.out.println("Biopsy saved with id: " + biopsy.getId());
 		System.out.println();
-		writeBiopsies();
   }
 
-	private void writeBiopsies() {
-		FileWriter writer;
+	private String saveRecord(Biopsy biopsy) {
+		DataLoader.RawBiopsy raw = toRaw(biopsy);
+		return record(json -> writeBiopsyFields(json, raw));
+	}
+
+	private static DataLoader.RawBiopsy toRaw(Biopsy biopsy) {
+		return new DataLoader.RawBiopsy(biopsy.getId(), biopsy.getType(), biopsy.getDoctor().getId(),
+				biopsy.getPatient().getId(), biopsy.getStatus(), biopsy.getNotes(), biopsy.getStatusTimes().toArray());
+	}
+
+	private interface Fields {
+		void write(JsonWriter json) throws IOException;
+	}
+
+	/** One journal line: a save of the fields the writer emits. */
+	private static String record(Fields fields) {
+		StringWriter out = new StringWriter();
 		try {
-				writer = new FileWriter(PATH_BIO);
+			JsonWriter json = new JsonWriter(out, "").beginObject().name("op").value("save");
+			fields.write(json);
+			json.endObject();
 		} catch (IOException e) {
-				e.printStackTrace();
-				return;
+			throw new UncheckedIOException(e);
 		}
+		return out.toString();
+	}
 
-		String content = "[\n";
-		for (Biopsy biopsy : biopsies.values()) {
-			content += String.format("""
-					{
-					"type": "%s",
-					"doctor": %d,
-					"patient": %d,
-					"status": "%s",
-					"notes": "%s",
-					"id": %d
-					}""",
-					biopsy.getType(),
-					biopsy.getDoctor().getId(),
-					biopsy.getPatient().getId(),
-					biopsy.getStatus(),
-					biopsy.getNotes(),
-					biopsy.getId());
-			if (biopsies.size() > biopsy.getId()) {
-				content += ",\n";
-			}
-		}
-		content += "\n]";
+	private String deleteRecord(int id) {
+		return "{\"op\":\"delete\",\"id\":" + id + "}";
+	}
 
+	/** Folds the journal into biopsies.json once enough edits have piled up. Called holding biopsiesLock. */
+	private void compactBiopsies() {
+		if (!biopsyJournal.needsCompaction()) {
+			return;
+		}
+		ArrayList<DataLoader.RawBiopsy> copy = new ArrayList<>(biopsies.size());
+		for (Biopsy biopsy : biopsies.values()) {
+			copy.add(toRaw(biopsy));
+		}
+		int lastId = biopsyIds.last();
 		try {
-				writer.write(content);
-				writer.close();
+			biopsyJournal.compact(out -> writeBiopsies(out, copy, lastId));
 		} catch (IOException e) {
-				e.printStackTrace();
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes the snapshot. Tombstones are folded away, except that when the
+	 * highest id ever issued belongs to a deleted biopsy a single tombstone
+	 * for it is kept so the id sequence survives a restart.
+	 */
+	private static void writeBiopsies(Writer out, List<DataLoader.RawBiopsy> biopsies, int lastId) throws IOException {
+		JsonWriter json = new JsonWriter(out);
+		json.beginArray();
+		int maxLive = 0;
+		for (DataLoader.RawBiopsy biopsy : biopsies) {
+			maxLive = Math.max(maxLive, biopsy.id());
+			json.beginObject();
+			writeBiopsyFields(json, biopsy);
+			json.endObject();
+		}
+		if (lastId > maxLive) {
+			json.beginObject()
+					.name("id").value(lastId)
+					.name("deleted").value(true)
+					.endObject();
+		}
+		json.endArray();
+		json.flush();
+	}
+
+	private static void writeBiopsyFields(JsonWriter json, DataLoader.RawBiopsy biopsy) throws IOException {
+		json.name("type").value(biopsy.type().toString())
+				.name("doctor").value(biopsy.doctorId())
+				.name("patient").value(biopsy.patientId())
+				.name("status").value(biopsy.status().toString())
+				.name("notes").value(biopsy.notes())
+				.name("id").value(biopsy.id());
+		writeStatusTimes(json, biopsy.statusTimes());
+	}
+
+	/** Only the statuses reached are written; see {@link StatusTimes}. */
+	private static void writeStatusTimes(JsonWriter json, long[] times) throws IOException {
+		Status[] statuses = Status.values();
+		json.name("statusTimes").beginObject();
+		for (int i = 0; i < times.length; i++) {
+			if (times[i] != 0) {
+				json.name(statuses[i].toString()).value(times[i]);
+			}
 		}
+		json.endObject();
 	}
 
+	/**
+	 * Streams patients.json straight to disk. Histories nobody opened are
+	 * copied over from the current file one patient at a time, then the
+	 * archive re-indexes the new file.
+	 */
 	private void writePatients() {
-		String content = "[\n";
-		for (Patient patient : patients.values()) {
-			String json = """
-					{
-						"firstName": "%s",
-						"lastName": "%s",
-						"id": %d,
-						"prevCharts": [
-					}
-					"""
-				.formatted(patient.getFirstName(), patient.getLastName(), patient.getId());
-			content = content + json;
-
-			for (Chart chart : charts.values()) {
-				if (patient == chart.getPatient()) {
-					json = """
-							"patientId": %d,
-							"chartId": %d,
-							"userIdIss": %d,
-							"dateIss": "%s",
-							"others": [%d],
-							"allergies": "%s",
-							"additionalNotes": "%s"
-							"""
-							.formatted(
-								chart.getPatient().getId(),
-								chart.getId(),
-								chart.getUser().getId(),
-								chart.getDate(),
-								chart.getOthers(),
-								chart.getAllergies(),
-								chart.getNotes()
-							);
+		patientsLock.lock();
+		try {
+			Journal.writeAtomically(Path.of(pathPat), this::writePatients);
+			stamps.record(Path.of(pathPat));
+			chartArchive.saved(DataLoader.readPatients(Path.of(pathPat)));
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			patientsLock.unlock();
+		}
+	}
+
+	private void writePatients(Writer out) throws IOException {
+		JsonWriter json = new JsonWriter(out);
+		json.beginArray();
+		chartArchive.scan((patientId, live, stored) -> {
+			Patient patient = getPatientById(patientId);
+			if (patient == null) {
+				return;
+			}
+			json.beginObject()
+					.name("firstName").value(patient.getFirstName())
+					.name("lastName").value(patient.getLastName())
+					.name("id").value(patient.getId());
+
+			List<DataLoader.RawChart> prevCharts = stored;
+			if (live != null) {
+				prevCharts = new ArrayList<>(live.size());
+				for (Chart chart : live) {
+					prevCharts.add(toRaw(chart));
 				}
 			}
+			if (!prevCharts.isEmpty()) {
+				json.name("prevCharts").beginArray();
+				for (DataLoader.RawChart chart : prevCharts) {
+					json.beginObject();
+					writeChartFields(json, chart);
+					json.endObject();
+				}
+				json.endArray();
+			}
+			json.endObject();
+		});
+		json.endArray();
+		json.flush();
+	}
+
+	private static void writeChartFields(JsonWriter json, DataLoader.RawChart chart) throws IOException {
+		json.name("patientId").value(chart.patientId())
+				.name("chartId").value(chart.chartId())
+				.name("userIdIss").value(chart.userId())
+				.name("dateIss").value(chart.dateText())
+				.name("others").inlineIds(chart.others())
+				.name("allergies").value(chart.allergies())
+				.name("additionalNotes").value(chart.notes());
+	}
+
+	private static DataLoader.RawSample toRaw(Sample sample) {
+		return new DataLoader.RawSample(sample.getId(), sample.getSampleType(), sample.getStatus(), sample.getPriority(),
+				sample.getPatient() == null ? 0 : sample.getPatient().getId(), sample.getResults(), sample.getStatusTimes().toArray(),
+				sample.getClaimedBy());
+	}
+
+	private static void writeSamples(Writer out, List<DataLoader.RawSample> samples) throws IOException {
+		JsonWriter json = new JsonWriter(out);
+		json.beginArray();
+		for (DataLoader.RawSample sample : samples) {
+			json.beginObject();
+			writeSampleFields(json, sample);
+			json.endObject();
 		}
-		content = content + "\n]";
+		json.endArray();
+		json.flush();
 	}
 
-	private void writeSamples() {
-		String content = "[\n";
-		for (Sample sample : samples.values()) {
-			String json = """
-					{
-						"id": %d,
-						"sampleType": "%s",
-						"status": "%s",
-						"patient": %d,
-						"results": %s
-					}
-					"""
-				.formatted(
-					sample.getId(),
-					sample.getSampleType(),
-					sample.getStatus().toString(),
-					sample.getPatient().getId(),
-					sample.getResults().toString()
-				);
-			content = content + json;
-		}
-		content = content + "\n]";
-	}
-
-	private void writePCRs() {
-		String content = "[\n";
-		for (PCR pcr : pcrs.values()) {
-			String json = """
-					{
-						"id": %d,
-						"patient": %d,
-						"emts": [%d, %d],
-						"notes": "%s"
-					}
-					"""
-				.formatted(
-					pcr.getId(),
-					pcr.getPatient().getId(),
-					pcr.getAmbulance().getEMT().get(0).getId(),
-					pcr.getAmbulance().getEMT().get(1).getId(),
-					pcr.getNotes()
-				);
-			content = content + json;
+	private static void writeSampleFields(JsonWriter json, DataLoader.RawSample sample) throws IOException {
+		json.name("id").value(sample.id())
+				.name("sampleType").value(sample.sampleType())
+				.name("status").value(sample.status().toString())
+				.name("priority").value(sample.priority().toString())
+				.name("patient").value(sample.patientId())
+				.name("results").beginObject();
+		for (Map.Entry<String, String> result : sample.results().entrySet()) {
+			json.name(result.getKey()).value(result.getValue());
+		}
+		json.endObject();
+		writeStatusTimes(json, sample.statusTimes());
+		if (sample.claimedBy() != 0) {
+			json.name("claimedBy").value(sample.claimedBy());
 		}
-		content = content + "\n]";
 	}
 
+	private static DataLoader.RawPCR toRaw(PCR pcr) {
+		List<EMT> emts = pcr.getAmbulance().getEMT();
+		return new DataLoader.RawPCR(pcr.getId(), pcr.getPatient() == null ? 0 : pcr.getPatient().getId(),
+				emts.get(0).getId(), emts.get(1).getId(), pcr.getNotes());
+	}
+
+	private static void writePCRs(Writer out, List<DataLoader.RawPCR> pcrs) throws IOException {
+		JsonWriter json = new JsonWriter(out);
+		json.beginArray();
+		for (DataLoader.RawPCR pcr : pcrs) {
+			json.beginObject();
+			writePCRFields(json, pcr);
+			json.endObject();
+		}
+		json.endArray();
+		json.flush();
+	}
+
+	private static void writePCRFields(JsonWriter json, DataLoader.RawPCR pcr) throws IOException {
+		json.name("id").value(pcr.id())
+				.name("patient").value(pcr.patientId())
+				.name("emts").inlineIds(pcr.emtId1(), pcr.emtId2())
+				.name("notes").value(pcr.notes());
+	}
 }
@@ -0,0 +1,29 @@
+package diagnostic_services.file_system;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out increasing ids that are never reused, even after the record that
+ * held the highest id is deleted.
+ */
+public class IdSequence {
+	private final AtomicInteger last = new AtomicInteger();
+
+	public int next() {
+		return last.incrementAndGet();
+	}
+
+	/** Takes {@code count} consecutive ids at once and returns the first of them. */
+	public int reserve(int count) {
+		return last.getAndAdd(count) + 1;
+	}
+
+	/** Makes sure ids already in use, live or deleted, are never handed out again. */
+	public void observe(int id) {
+		last.accumulateAndGet(id, Math::max);
+	}
+
+	public int last() {
+		return last.get();
+	}
+}
@@ -0,0 +1,233 @@
+package diagnostic_services.file_system;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Append-only log of changes to a JSON snapshot file. Each edit is one JSON
+ * record per line, so its cost does not depend on how large the snapshot is.
+ * Once the log grows past a threshold it is rotated aside and folded into a
+ * fresh snapshot on a background thread.
+ *
+ * Neither step can lose data: the snapshot is only ever replaced by an atomic
+ * rename of a fully written file, and the rotated log is kept until that rename
+ * has happened. Readers replay the rotated log, then the live log, on top of
+ * the snapshot.
+ */
+public class Journal implements Closeable {
+	public interface SnapshotWriter {
+		void write(Writer out) throws IOException;
+	}
+
+	public interface RecordHandler {
+		void apply(JsonReader record) throws IOException;
+	}
+
+	private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "journal-compactor");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final Path snapshot;
+	private final Path log;
+	private final Path rotated;
+	private final int compactAfter;
+
+	private volatile Consumer<Path> onWrite = path -> {};
+	private FileChannel channel;
+	private int records = 0;
+	private volatile boolean compacting = false;
+
+	public Journal(Path snapshot, int compactAfter) {
+		this.snapshot = snapshot;
+		this.log = snapshot.resolveSibling(snapshot.getFileName() + ".journal");
+		this.rotated = snapshot.resolveSibling(snapshot.getFileName() + ".journal.old");
+		this.compactAfter = compactAfter;
+	}
+
+	public Path getSnapshot() {
+		return snapshot;
+	}
+
+	/** Called with each file this journal creates, changes or deletes. */
+	public void setOnWrite(Consumer<Path> onWrite) {
+		this.onWrite = onWrite;
+	}
+
+	/**
+	 * Applies every logged record in order. A torn final line from a crash
+	 * mid-append is skipped.
+	 */
+	public void replay(RecordHandler handler) throws IOException {
+		records = 0;
+		for (Path path : new Path[] { rotated, log }) {
+			if (!Files.exists(path)) {
+				continue;
+			}
+			try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = in.readLine()) != null) {
+					if (line.isBlank()) {
+						continue;
+					}
+					if (path == log) {
+						records++;
+					}
+					try (JsonReader record = new JsonReader(line)) {
+						handler.apply(record);
+					} catch (IOException | IllegalArgumentException e) {
+						System.err.println("Skipping unreadable journal record in " + path + ": " + e.getMessage());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Counts the live log's records without applying them, so compaction is
+	 * still triggered at the right size when the state came from elsewhere.
+	 */
+	public synchronized void recount() throws IOException {
+		records = 0;
+		if (!Files.exists(log)) {
+			return;
+		}
+		try (BufferedReader in = Files.newBufferedReader(log, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (!line.isBlank()) {
+					records++;
+				}
+			}
+		}
+	}
+
+	public synchronized void append(String record) throws IOException {
+		appendAll(List.of(record));
+	}
+
+	/** Appends the records in order with a single sync, so a batch costs one disk flush. */
+	public synchronized void appendAll(List<String> batch) throws IOException {
+		if (batch.isEmpty()) {
+			return;
+		}
+		if (channel == null) {
+			channel = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		}
+		StringBuilder lines = new StringBuilder();
+		for (String record : batch) {
+			lines.append(record).append('\n');
+		}
+		ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+		channel.force(false);
+		records += batch.size();
+		onWrite.accept(log);
+	}
+
+	/**
+	 * Drops every logged record. Only for callers that have just rewritten the
+	 * snapshot themselves with everything the log held.
+	 */
+	public synchronized void clear() throws IOException {
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+		Files.deleteIfExists(log);
+		Files.deleteIfExists(rotated);
+		records = 0;
+		onWrite.accept(log);
+		onWrite.accept(rotated);
+	}
+
+	public synchronized boolean needsCompaction() {
+		return !compacting && records >= compactAfter;
+	}
+
+	/**
+	 * Moves the live log aside and writes a new snapshot in the background.
+	 * The writer must work from a copy of the state taken together with this
+	 * call, since appends made afterwards land in the new log.
+	 */
+	public synchronized void compact(SnapshotWriter writer) throws IOException {
+		if (compacting) {
+			return;
+		}
+		compacting = true;
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+		if (Files.exists(rotated) && Files.exists(log)) {
+			// A compaction died before finishing; keep its records ahead of ours.
+			try (FileChannel from = FileChannel.open(log, StandardOpenOption.READ);
+					FileChannel to = FileChannel.open(rotated, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+				from.transferTo(0, from.size(), to);
+				to.force(false);
+			}
+			Files.delete(log);
+		} else if (Files.exists(log)) {
+			Files.move(log, rotated, StandardCopyOption.ATOMIC_MOVE);
+		}
+		records = 0;
+		onWrite.accept(log);
+		onWrite.accept(rotated);
+
+		COMPACTOR.execute(() -> {
+			try {
+				writeSnapshot(writer);
+				onWrite.accept(snapshot);
+				Files.deleteIfExists(rotated);
+				onWrite.accept(rotated);
+			} catch (IOException e) {
+				e.printStackTrace();
+			} finally {
+				compacting = false;
+			}
+		});
+	}
+
+	public void writeSnapshot(SnapshotWriter writer) throws IOException {
+		writeAtomically(snapshot, writer);
+	}
+
+	/** Replaces {@code target} with a fully written and synced temporary file. */
+	public static void writeAtomically(Path target, SnapshotWriter writer) throws IOException {
+		Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+		try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			BufferedWriter buffered = new BufferedWriter(Channels.newWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+			writer.write(buffered);
+			buffered.flush();
+			out.force(true);
+		}
+		Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+	}
+}
@@ -0,0 +1,507 @@
+package diagnostic_services.file_system;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Streaming pull parser for the diagnostic data files. Reads UTF-8 bytes
+ * through a fixed buffer, parses numbers in place and reuses the String for
+ * repeated object keys, so loading a file allocates little beyond the values
+ * the caller keeps. Several top-level values may follow each other, which lets
+ * the same reader walk newline-delimited records.
+ */
+public final class JsonReader implements Closeable {
+	public enum Token {
+		BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+	}
+
+	private static final int EMPTY_ARRAY = 1;
+	private static final int NONEMPTY_ARRAY = 2;
+	private static final int EMPTY_OBJECT = 3;
+	private static final int DANGLING_NAME = 4;
+	private static final int NONEMPTY_OBJECT = 5;
+	private static final int EMPTY_DOCUMENT = 6;
+	private static final int NONEMPTY_DOCUMENT = 7;
+
+	private final InputStream in;
+	private final byte[] buf;
+	private int pos = 0;
+	private int limit = 0;
+	private long consumed = 0;
+
+	private int[] stack = new int[32];
+	private int depth = 0;
+	private Token peeked;
+
+	private char[] chars = new char[128];
+	private int length = 0;
+	private final String[] names = new String[256];
+
+	public JsonReader(InputStream in) {
+		this(in, 8192);
+	}
+
+	public JsonReader(InputStream in, int bufferSize) {
+		this.in = in;
+		this.buf = new byte[bufferSize];
+		stack[depth++] = EMPTY_DOCUMENT;
+	}
+
+	public JsonReader(String json) {
+		this(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), Math.max(16, json.length()));
+	}
+
+	public static JsonReader open(Path path) throws IOException {
+		return new JsonReader(Files.newInputStream(path), 64 * 1024);
+	}
+
+	/** Byte offset of the next unread byte; after {@link #peek()} this is the start of the peeked token. */
+	public long position() {
+		return consumed + pos;
+	}
+
+	public Token peek() throws IOException {
+		if (peeked != null) {
+			return peeked;
+		}
+
+		int c;
+		switch (stack[depth - 1]) {
+			case EMPTY_ARRAY -> {
+				stack[depth - 1] = NONEMPTY_ARRAY;
+				c = skipWhitespace();
+				if (c == ']') {
+					return peeked = Token.END_ARRAY;
+				}
+			}
+			case NONEMPTY_ARRAY -> {
+				c = skipWhitespace();
+				if (c == ']') {
+					return peeked = Token.END_ARRAY;
+				}
+				expect(c, ',');
+				pos++;
+				c = skipWhitespace();
+				if (c == ']') {
+					return peeked = Token.END_ARRAY;
+				}
+			}
+			case EMPTY_OBJECT, NONEMPTY_OBJECT -> {
+				c = skipWhitespace();
+				if (c == ',' && stack[depth - 1] == NONEMPTY_OBJECT) {
+					pos++;
+					c = skipWhitespace();
+				}
+				if (c == '}') {
+					return peeked = Token.END_OBJECT;
+				}
+				expect(c, '"');
+				stack[depth - 1] = DANGLING_NAME;
+				return peeked = Token.NAME;
+			}
+			case DANGLING_NAME -> {
+				expect(skipWhitespace(), ':');
+				pos++;
+				stack[depth - 1] = NONEMPTY_OBJECT;
+				c = skipWhitespace();
+			}
+			case EMPTY_DOCUMENT -> {
+				stack[depth - 1] = NONEMPTY_DOCUMENT;
+				c = skipWhitespace();
+				if (c == -1) {
+					return peeked = Token.END_DOCUMENT;
+				}
+			}
+			default -> {
+				c = skipWhitespace();
+				if (c == -1) {
+					return peeked = Token.END_DOCUMENT;
+				}
+			}
+		}
+
+		return peeked = switch (c) {
+			case '{' -> Token.BEGIN_OBJECT;
+			case '[' -> Token.BEGIN_ARRAY;
+			case '"' -> Token.STRING;
+			case 't', 'f' -> Token.BOOLEAN;
+			case 'n' -> Token.NULL;
+			case -1 -> throw syntaxError("Unexpected end of input");
+			default -> {
+				if (c == '-' || (c >= '0' && c <= '9')) {
+					yield Token.NUMBER;
+				}
+				throw syntaxError("Unexpected character '" + (char) c + "'");
+			}
+		};
+	}
+
+	public boolean hasNext() throws IOException {
+		Token t = peek();
+		return t != Token.END_ARRAY && t != Token.END_OBJECT && t != Token.END_DOCUMENT;
+	}
+
+	public void beginArray() throws IOException {
+		consume(Token.BEGIN_ARRAY);
+		pos++;
+		push(EMPTY_ARRAY);
+	}
+
+	public void endArray() throws IOException {
+		consume(Token.END_ARRAY);
+		pos++;
+		depth--;
+	}
+
+	public void beginObject() throws IOException {
+		consume(Token.BEGIN_OBJECT);
+		pos++;
+		push(EMPTY_OBJECT);
+	}
+
+	public void endObject() throws IOException {
+		consume(Token.END_OBJECT);
+		pos++;
+		depth--;
+	}
+
+	public String nextName() throws IOException {
+		consume(Token.NAME);
+		pos++;
+		int hash = readChars();
+		int slot = hash & (names.length - 1);
+		String cached = names[slot];
+		if (cached != null && matches(cached)) {
+			return cached;
+		}
+		String name = new String(chars, 0, length);
+		names[slot] = name;
+		return name;
+	}
+
+	public String nextString() throws IOException {
+		Token t = peek();
+		if (t == Token.STRING) {
+			peeked = null;
+			pos++;
+			readChars();
+			return new String(chars, 0, length);
+		}
+		if (t == Token.NUMBER) {
+			peeked = null;
+			readNumberChars();
+			return new String(chars, 0, length);
+		}
+		if (t == Token.NULL) {
+			nextNull();
+			return null;
+		}
+		throw syntaxError("Expected STRING but was " + t);
+	}
+
+	public int nextInt() throws IOException {
+		long value = nextLong();
+		if ((int) value != value) {
+			throw syntaxError("Number out of int range: " + value);
+		}
+		return (int) value;
+	}
+
+	public long nextLong() throws IOException {
+		Token t = peek();
+		if (t == Token.STRING) {
+			String s = nextString().strip();
+			try {
+				return Long.parseLong(s);
+			} catch (NumberFormatException e) {
+				throw syntaxError("Expected a number but was \"" + s + "\"");
+			}
+		}
+		consume(Token.NUMBER);
+
+		boolean negative = false;
+		if (current() == '-') {
+			negative = true;
+			pos++;
+		}
+		long value = 0;
+		int digits = 0;
+		int c;
+		while ((c = current()) >= '0' && c <= '9') {
+			value = value * 10 + (c - '0');
+			pos++;
+			digits++;
+		}
+		if (digits == 0 || c == '.' || c == 'e' || c == 'E') {
+			throw syntaxError("Expected an integer");
+		}
+		return negative ? -value : value;
+	}
+
+	public double nextDouble() throws IOException {
+		Token t = peek();
+		String s;
+		if (t == Token.NUMBER) {
+			peeked = null;
+			readNumberChars();
+			s = new String(chars, 0, length);
+		} else {
+			s = nextString().strip();
+		}
+		try {
+			return Double.parseDouble(s);
+		} catch (NumberFormatException e) {
+			throw syntaxError("Expected a number but was \"" + s + "\"");
+		}
+	}
+
+	public boolean nextBoolean() throws IOException {
+		consume(Token.BOOLEAN);
+		if (current() == 't') {
+			skipLiteral("true");
+			return true;
+		}
+		skipLiteral("false");
+		return false;
+	}
+
+	public void nextNull() throws IOException {
+		consume(Token.NULL);
+		skipLiteral("null");
+	}
+
+	public void skipValue() throws IOException {
+		int count = 0;
+		do {
+			Token t = peek();
+			switch (t) {
+				case BEGIN_ARRAY -> {
+					beginArray();
+					count++;
+				}
+				case BEGIN_OBJECT -> {
+					beginObject();
+					count++;
+				}
+				case END_ARRAY -> {
+					endArray();
+					count--;
+				}
+				case END_OBJECT -> {
+					endObject();
+					count--;
+				}
+				case NAME, STRING -> {
+					peeked = null;
+					pos++;
+					skipString();
+				}
+				case NUMBER -> {
+					peeked = null;
+					readNumberChars();
+				}
+				case BOOLEAN -> nextBoolean();
+				case NULL -> nextNull();
+				case END_DOCUMENT -> throw syntaxError("Unexpected end of input");
+			}
+		} while (count > 0);
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private void consume(Token expected) throws IOException {
+		Token t = peek();
+		if (t != expected) {
+			throw syntaxError("Expected " + expected + " but was " + t);
+		}
+		peeked = null;
+	}
+
+	private void push(int state) {
+		if (depth == stack.length) {
+			int[] grown = new int[depth * 2];
+			System.arraycopy(stack, 0, grown, 0, depth);
+			stack = grown;
+		}
+		stack[depth++] = state;
+	}
+
+	private int current() throws IOException {
+		if (pos == limit && !fill()) {
+			return -1;
+		}
+		return buf[pos] & 0xFF;
+	}
+
+	private boolean fill() throws IOException {
+		consumed += limit;
+		pos = 0;
+		limit = 0;
+		int n = in.read(buf, 0, buf.length);
+		if (n <= 0) {
+			return false;
+		}
+		limit = n;
+		return true;
+	}
+
+	private int skipWhitespace() throws IOException {
+		int c;
+		while ((c = current()) == ' ' || c == '\n' || c == '\r' || c == '\t') {
+			pos++;
+		}
+		return c;
+	}
+
+	private void expect(int c, char expected) throws IOException {
+		if (c != expected) {
+			throw syntaxError("Expected '" + expected + "' but was " + (c == -1 ? "end of input" : "'" + (char) c + "'"));
+		}
+	}
+
+	private void skipLiteral(String literal) throws IOException {
+		for (int i = 0; i < literal.length(); i++) {
+			if (current() != literal.charAt(i)) {
+				throw syntaxError("Expected " + literal);
+			}
+			pos++;
+		}
+	}
+
+	/** Decodes the string body after the opening quote into {@code chars}, returning its hash. */
+	private int readChars() throws IOException {
+		length = 0;
+		int hash = 0;
+		while (true) {
+			int c = current();
+			if (c == -1) {
+				throw syntaxError("Unterminated string");
+			}
+			pos++;
+			if (c == '"') {
+				return hash;
+			}
+			if (c == '\\') {
+				c = readEscape();
+			} else if (c >= 0x80) {
+				c = readMultiByte(c);
+				if (c > 0xFFFF) {
+					append(Character.highSurrogate(c));
+					hash = 31 * hash + Character.highSurrogate(c);
+					c = Character.lowSurrogate(c);
+				}
+			}
+			append((char) c);
+			hash = 31 * hash + c;
+		}
+	}
+
+	private void skipString() throws IOException {
+		while (true) {
+			int c = current();
+			if (c == -1) {
+				throw syntaxError("Unterminated string");
+			}
+			pos++;
+			if (c == '"') {
+				return;
+			}
+			if (c == '\\') {
+				current();
+				pos++;
+			}
+		}
+	}
+
+	private int readEscape() throws IOException {
+		int c = current();
+		pos++;
+		return switch (c) {
+			case 'n' -> '\n';
+			case 't' -> '\t';
+			case 'r' -> '\r';
+			case 'b' -> '\b';
+			case 'f' -> '\f';
+			case 'u' -> {
+				int value = 0;
+				for (int i = 0; i < 4; i++) {
+					int h = Character.digit(current(), 16);
+					if (h < 0) {
+						throw syntaxError("Invalid unicode escape");
+					}
+					pos++;
+					value = (value << 4) | h;
+				}
+				yield value;
+			}
+			case '"', '\\', '/' -> c;
+			default -> throw syntaxError("Invalid escape");
+		};
+	}
+
+	private int readMultiByte(int first) throws IOException {
+		int extra;
+		int value;
+		if ((first & 0xE0) == 0xC0) {
+			extra = 1;
+			value = first & 0x1F;
+		} else if ((first & 0xF0) == 0xE0) {
+			extra = 2;
+			value = first & 0x0F;
+		} else {
+			extra = 3;
+			value = first & 0x07;
+		}
+		for (int i = 0; i < extra; i++) {
+			int c = current();
+			if (c == -1 || (c & 0xC0) != 0x80) {
+				throw syntaxError("Invalid UTF-8 sequence");
+			}
+			pos++;
+			value = (value << 6) | (c & 0x3F);
+		}
+		return value;
+	}
+
+	private void readNumberChars() throws IOException {
+		length = 0;
+		int c;
+		while ((c = current()) == '-' || c == '+' || c == '.' || c == 'e' || c == 'E' || (c >= '0' && c <= '9')) {
+			append((char) c);
+			pos++;
+		}
+	}
+
+	private void append(char c) {
+		if (length == chars.length) {
+			char[] grown = new char[length * 2];
+			System.arraycopy(chars, 0, grown, 0, length);
+			chars = grown;
+		}
+		chars[length++] = c;
+	}
+
+	private boolean matches(String s) {
+		if (s.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (s.charAt(i) != chars[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private IOException syntaxError(String message) {
+		return new IOException(message + " at byte " + position());
+	}
+}
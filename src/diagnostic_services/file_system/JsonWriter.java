@@ -0,0 +1,186 @@
+package diagnostic_services.file_system;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streaming counterpart to {@link JsonReader}. Values go straight to the
+ * underlying Writer; with an empty indent every value is written on one line,
+ * which is the form journal records use.
+ */
+public final class JsonWriter implements Closeable, Flushable {
+	private final Writer out;
+	private final String indent;
+
+	private boolean[] first = new boolean[32];
+	private int depth = 0;
+	private boolean afterName = false;
+
+	public JsonWriter(Writer out) {
+		this(out, "\t");
+	}
+
+	public JsonWriter(Writer out, String indent) {
+		this.out = out;
+		this.indent = indent;
+	}
+
+	public JsonWriter beginArray() throws IOException {
+		return open('[');
+	}
+
+	public JsonWriter endArray() throws IOException {
+		return close(']');
+	}
+
+	public JsonWriter beginObject() throws IOException {
+		return open('{');
+	}
+
+	public JsonWriter endObject() throws IOException {
+		return close('}');
+	}
+
+	public JsonWriter name(String name) throws IOException {
+		beforeValue();
+		string(name);
+		out.write(indent.isEmpty() ? ":" : ": ");
+		afterName = true;
+		return this;
+	}
+
+	public JsonWriter value(String value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+		beforeValue();
+		string(value);
+		return this;
+	}
+
+	public JsonWriter value(long value) throws IOException {
+		beforeValue();
+		out.write(Long.toString(value));
+		return this;
+	}
+
+	public JsonWriter value(double value) throws IOException {
+		beforeValue();
+		out.write(Double.toString(value));
+		return this;
+	}
+
+	public JsonWriter value(boolean value) throws IOException {
+		beforeValue();
+		out.write(value ? "true" : "false");
+		return this;
+	}
+
+	public JsonWriter nullValue() throws IOException {
+		beforeValue();
+		out.write("null");
+		return this;
+	}
+
+	/** Writes a nested array of ids on one line, matching how the data files list them. */
+	public JsonWriter inlineIds(int... ids) throws IOException {
+		beforeValue();
+		out.write('[');
+		for (int i = 0; i < ids.length; i++) {
+			if (i > 0) {
+				out.write(", ");
+			}
+			out.write(Integer.toString(ids[i]));
+		}
+		out.write(']');
+		return this;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	private JsonWriter open(char bracket) throws IOException {
+		beforeValue();
+		out.write(bracket);
+		if (depth == first.length) {
+			boolean[] grown = new boolean[depth * 2];
+			System.arraycopy(first, 0, grown, 0, depth);
+			first = grown;
+		}
+		first[depth++] = true;
+		return this;
+	}
+
+	private JsonWriter close(char bracket) throws IOException {
+		boolean empty = first[--depth];
+		if (!empty) {
+			newline(depth);
+		}
+		out.write(bracket);
+		return this;
+	}
+
+	private void beforeValue() throws IOException {
+		if (afterName) {
+			afterName = false;
+			return;
+		}
+		if (depth == 0) {
+			return;
+		}
+		if (!first[depth - 1]) {
+			out.write(',');
+		}
+		first[depth - 1] = false;
+		newline(depth);
+	}
+
+	private void newline(int level) throws IOException {
+		if (indent.isEmpty()) {
+			return;
+		}
+		out.write('\n');
+		for (int i = 0; i < level; i++) {
+			out.write(indent);
+		}
+	}
+
+	private void string(String value) throws IOException {
+		out.write('"');
+		int last = 0;
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			String replacement;
+			if (c == '"') {
+				replacement = "\\\"";
+			} else if (c == '\\') {
+				replacement = "\\\\";
+			} else if (c == '\n') {
+				replacement = "\\n";
+			} else if (c == '\r') {
+				replacement = "\\r";
+			} else if (c == '\t') {
+				replacement = "\\t";
+			} else if (c < 0x20) {
+				replacement = String.format("\\u%04x", (int) c);
+			} else {
+				continue;
+			}
+			out.write(value, last, i - last);
+			out.write(replacement);
+			last = i + 1;
+		}
+		out.write(value, last, length - last);
+		out.write('"');
+	}
+}
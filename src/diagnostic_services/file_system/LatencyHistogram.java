@@ -0,0 +1,70 @@
+package diagnostic_services.file_system;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative durations in the style of
+ * HdrHistogram: values below 128 get a bucket each, and every power of two
+ * above that is split into 64 buckets, so any recorded value is reported
+ * within about 1.6% while the whole range of a long fits in 3,712 counters.
+ * Recording is a couple of atomic increments; percentiles read the counters
+ * as they are, without stopping writers.
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKETS = 64;
+	private static final int BUCKETS = (62 - 6) * SUB_BUCKETS + 2 * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long value) {
+		if (value < 0) {
+			return;
+		}
+		counts.incrementAndGet(bucket(value));
+		total.incrementAndGet();
+		max.accumulateAndGet(value, Math::max);
+	}
+
+	public long count() {
+		return total.get();
+	}
+
+	public long max() {
+		return max.get();
+	}
+
+	/** The value at or below which {@code percentile} percent of recordings fall; 0 when empty. */
+	public long percentile(double percentile) {
+		long count = total.get();
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(highest(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	private static int bucket(long value) {
+		int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - 6);
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	/** The largest value that lands in the bucket. */
+	private static long highest(int bucket) {
+		if (bucket < 2 * SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long top = bucket % SUB_BUCKETS + SUB_BUCKETS;
+		return ((top + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,157 @@
+package diagnostic_services.file_system;
+
+import roles.*;
+
+/**
+ * Every person the diagnostic system knows, in one open-addressing table
+ * keyed by the primitive id. Each slot holds a bitmask of the roles filed
+ * under that id, so a question like "is this id a doctor or a nurse" is a
+ * single probe with no boxing. Ids are unique per role but may repeat
+ * across roles.
+ *
+ * The registry is filled while FilerSystem loads and only read afterwards;
+ * {@link #put} must not race with readers.
+ */
+public class PersonRegistry {
+	public enum Role {
+		DOCTOR, NURSE, LAB_TECH, EMT, PATIENT;
+
+		public int bit() {
+			return 1 << ordinal();
+		}
+
+		static Role of(Person person) {
+			if (person instanceof Doctor) {
+				return DOCTOR;
+			} else if (person instanceof Nurse) {
+				return NURSE;
+			} else if (person instanceof LabTech) {
+				return LAB_TECH;
+			} else if (person instanceof EMT) {
+				return EMT;
+			}
+			return PATIENT;
+		}
+	}
+
+	public static final int PROVIDER = Role.DOCTOR.bit() | Role.NURSE.bit();
+
+	private static final Role[] ROLES = Role.values();
+
+	private int[] ids = new int[64];
+	private byte[] roles = new byte[64];
+	// A Person when the id has one role, otherwise a Person[] indexed by role.
+	private Object[] people = new Object[64];
+	private int size = 0;
+	private final int[] counts = new int[ROLES.length];
+
+	/** Files the person under the role its class stands for, replacing anyone filed there before. */
+	public void put(Person person) {
+		if ((size + 1) * 2 > ids.length) {
+			grow();
+		}
+		Role role = Role.of(person);
+		int slot = find(person.getId());
+		int held = roles[slot];
+		if (held == 0) {
+			ids[slot] = person.getId();
+			people[slot] = person;
+			size++;
+		} else if (held == role.bit()) {
+			people[slot] = person;
+		} else {
+			Person[] byRole;
+			if (people[slot] instanceof Person[] existing) {
+				byRole = existing;
+			} else {
+				byRole = new Person[ROLES.length];
+				byRole[Integer.numberOfTrailingZeros(held)] = (Person) people[slot];
+				people[slot] = byRole;
+			}
+			byRole[role.ordinal()] = person;
+		}
+		if ((held & role.bit()) == 0) {
+			counts[role.ordinal()]++;
+		}
+		roles[slot] = (byte) (held | role.bit());
+	}
+
+	/** Bitmask of {@link Role#bit()} values held by the id, 0 if nobody has it. */
+	public int roles(int id) {
+		return roles[find(id)];
+	}
+
+	public boolean has(int id, Role role) {
+		return (roles(id) & role.bit()) != 0;
+	}
+
+	public boolean hasAny(int id, int mask) {
+		return (roles(id) & mask) != 0;
+	}
+
+	public Person get(int id, Role role) {
+		int slot = find(id);
+		if ((roles[slot] & role.bit()) == 0) {
+			return null;
+		}
+		Object held = people[slot];
+		return held instanceof Person[] byRole ? byRole[role.ordinal()] : (Person) held;
+	}
+
+	/** The person under the first role in {@code mask}, in {@link Role} order. */
+	public Person getAny(int id, int mask) {
+		int slot = find(id);
+		int matching = roles[slot] & mask;
+		if (matching == 0) {
+			return null;
+		}
+		Object held = people[slot];
+		return held instanceof Person[] byRole ? byRole[Integer.numberOfTrailingZeros(matching)] : (Person) held;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int count(Role role) {
+		return counts[role.ordinal()];
+	}
+
+	/** The slot holding the id, or the empty slot where it would go. */
+	private int find(int id) {
+		int mask = ids.length - 1;
+		int slot = mix(id) & mask;
+		while (roles[slot] != 0 && ids[slot] != id) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void grow() {
+		int[] oldIds = ids;
+		byte[] oldRoles = roles;
+		Object[] oldPeople = people;
+		ids = new int[oldIds.length * 2];
+		roles = new byte[oldIds.length * 2];
+		people = new Object[oldIds.length * 2];
+		for (int i = 0; i < oldIds.length; i++) {
+			if (oldRoles[i] != 0) {
+				int slot = find(oldIds[i]);
+				ids[slot] = oldIds[i];
+				roles[slot] = oldRoles[i];
+				people[slot] = oldPeople[i];
+			}
+		}
+	}
+
+	/** Spreads sequential ids across the table (the murmur3 finalizer). */
+	private static int mix(int id) {
+		int h = id;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
@@ -0,0 +1,90 @@
+package diagnostic_services.file_system;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Reverse index from a provider's id to the charts they issued or co-signed,
+ * so a caseload is read in time proportional to its own size instead of by
+ * scanning every chart.
+ */
+public class ProviderChartIndex {
+	/** A chart in a caseload; {@code issued} is an epoch day, see {@link ChartDates}. */
+	public record Entry(int chartId, int patientId, int issued) {}
+
+	private static final Comparator<Entry> NEWEST_FIRST =
+			Comparator.comparingInt(Entry::issued).reversed().thenComparing(Comparator.comparingInt(Entry::chartId).reversed());
+
+	/** Parallel arrays of one provider's charts, in the order they were added. */
+	private static final class Caseload {
+		int[] chartIds = new int[4];
+		int[] patientIds = new int[4];
+		int[] issued = new int[4];
+		int size = 0;
+
+		void add(int chartId, int patientId, int date) {
+			if (size == chartIds.length) {
+				chartIds = Arrays.copyOf(chartIds, size * 2);
+				patientIds = Arrays.copyOf(patientIds, size * 2);
+				issued = Arrays.copyOf(issued, size * 2);
+			}
+			chartIds[size] = chartId;
+			patientIds[size] = patientId;
+			issued[size] = date;
+			size++;
+		}
+	}
+
+	private final HashMap<Integer, Caseload> byProvider = new HashMap<>();
+
+	/** Files the chart under its issuer and every co-signer, once each. */
+	public synchronized void add(int chartId, int patientId, int issued, int userId, int[] others) {
+		if (userId != 0) {
+			caseload(userId).add(chartId, patientId, issued);
+		}
+		for (int i = 0; i < others.length; i++) {
+			int other = others[i];
+			if (other == 0 || other == userId || indexOf(others, other) < i) {
+				continue;
+			}
+			caseload(other).add(chartId, patientId, issued);
+		}
+	}
+
+	/** The provider's charts, newest issue date first when {@code byDate}, otherwise in the order they were filed. */
+	public synchronized List<Entry> charts(int providerId, boolean byDate) {
+		Caseload caseload = byProvider.get(providerId);
+		if (caseload == null) {
+			return List.of();
+		}
+		List<Entry> entries = new ArrayList<>(caseload.size);
+		for (int i = 0; i < caseload.size; i++) {
+			entries.add(new Entry(caseload.chartIds[i], caseload.patientIds[i], caseload.issued[i]));
+		}
+		if (byDate) {
+			entries.sort(NEWEST_FIRST);
+		}
+		return entries;
+	}
+
+	public synchronized int count(int providerId) {
+		Caseload caseload = byProvider.get(providerId);
+		return caseload == null ? 0 : caseload.size;
+	}
+
+	private Caseload caseload(int providerId) {
+		return byProvider.computeIfAbsent(providerId, id -> new Caseload());
+	}
+
+	private static int indexOf(int[] ids, int id) {
+		for (int i = 0; i < ids.length; i++) {
+			if (ids[i] == id) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,45 @@
+package diagnostic_services.file_system;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * When a sample or biopsy first reached each {@link Status}, in epoch
+ * milliseconds, with 0 for a status it has not reached. Going back to a
+ * status keeps the first time, so PENDING stays the time it was filed.
+ */
+public class StatusTimes {
+	private static final Status[] STATUSES = Status.values();
+
+	private final AtomicLongArray at = new AtomicLongArray(STATUSES.length);
+
+	public void record(Status status) {
+		at.compareAndSet(status.ordinal(), 0, System.currentTimeMillis());
+	}
+
+	public long get(Status status) {
+		return at.get(status.ordinal());
+	}
+
+	/** Milliseconds from {@code from} to {@code to}, or -1 if either has not happened. */
+	public long between(Status from, Status to) {
+		long start = get(from);
+		long end = get(to);
+		return start == 0 || end == 0 ? -1 : Math.max(0, end - start);
+	}
+
+	/** One entry per {@link Status} ordinal. */
+	public long[] toArray() {
+		long[] times = new long[STATUSES.length];
+		for (int i = 0; i < times.length; i++) {
+			times[i] = at.get(i);
+		}
+		return times;
+	}
+
+	/** Replaces every time with the stored ones, as written by {@link #toArray()}. */
+	public void load(long[] times) {
+		for (int i = 0; i < STATUSES.length; i++) {
+			at.set(i, i < times.length ? times[i] : 0);
+		}
+	}
+}
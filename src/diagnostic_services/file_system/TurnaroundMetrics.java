@@ -0,0 +1,115 @@
+package diagnostic_services.file_system;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * PENDING to COMPLETED turnaround, one {@link LatencyHistogram} per sample
+ * type and per biopsy category. FilerSystem seeds it from the completed
+ * records it loads and records each completion as it happens.
+ */
+public class TurnaroundMetrics {
+	public static final double[] PERCENTILES = { 50, 95, 99 };
+
+	private final ConcurrentHashMap<String, LatencyHistogram> samples = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, LatencyHistogram> biopsies = new ConcurrentHashMap<>();
+
+	public void recordSample(String sampleType, long millis) {
+		samples.computeIfAbsent(sampleType, type -> new LatencyHistogram()).record(millis);
+	}
+
+	public void recordBiopsy(Biopsy.Category category, long millis) {
+		biopsies.computeIfAbsent(String.valueOf(category), type -> new LatencyHistogram()).record(millis);
+	}
+
+	/** Histograms by sample type, in name order. */
+	public Map<String, LatencyHistogram> getSamples() {
+		return new TreeMap<>(samples);
+	}
+
+	/** Histograms by biopsy category, in name order. */
+	public Map<String, LatencyHistogram> getBiopsies() {
+		return new TreeMap<>(biopsies);
+	}
+
+	public void display() {
+		System.out.printf("%-10s %-16s %8s %12s %12s %12s%n", "Kind", "Group", "Count", "p50", "p95", "p99");
+		display("Sample", getSamples());
+		display("Biopsy", getBiopsies());
+		System.out.println();
+	}
+
+	private static void display(String kind, Map<String, LatencyHistogram> groups) {
+		for (Map.Entry<String, LatencyHistogram> group : groups.entrySet()) {
+			LatencyHistogram histogram = group.getValue();
+			System.out.printf("%-10s %-16s %8d", kind, group.getKey(), histogram.count());
+			for (double percentile : PERCENTILES) {
+				System.out.printf(" %12s", format(histogram.percentile(percentile)));
+			}
+			System.out.println();
+		}
+	}
+
+	private static String format(long millis) {
+		if (millis < 60_000) {
+			return millis + " ms";
+		} else if (millis < 3_600_000) {
+			return String.format("%.1f min", millis / 60_000.0);
+		}
+		return String.format("%.1f h", millis / 3_600_000.0);
+	}
+
+	/** Writes the current percentiles, in milliseconds, to a JSON file, replacing it atomically. */
+	public void writeSnapshot(Path file) throws IOException {
+		Journal.writeAtomically(file, out -> {
+			JsonWriter json = new JsonWriter(out);
+			json.beginObject().name("takenAt").value(System.currentTimeMillis());
+			writeGroups(json, "samples", getSamples());
+			writeGroups(json, "biopsies", getBiopsies());
+			json.endObject();
+			json.flush();
+		});
+	}
+
+	private static void writeGroups(JsonWriter json, String name, Map<String, LatencyHistogram> groups) throws IOException {
+		json.name(name).beginObject();
+		for (Map.Entry<String, LatencyHistogram> group : groups.entrySet()) {
+			LatencyHistogram histogram = group.getValue();
+			json.name(group.getKey()).beginObject()
+					.name("count").value(histogram.count())
+					.name("p50").value(histogram.percentile(50))
+					.name("p95").value(histogram.percentile(95))
+					.name("p99").value(histogram.percentile(99))
+					.name("max").value(histogram.max())
+					.endObject();
+		}
+		json.endObject();
+	}
+
+	/**
+	 * Rewrites {@code file} every {@code periodSeconds} from whatever metrics
+	 * the supplier returns at the time, on a daemon thread.
+	 */
+	public static ScheduledExecutorService exportEvery(Supplier<TurnaroundMetrics> metrics, Path file, long periodSeconds) {
+		ScheduledExecutorService exporter = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "turnaround-export");
+			thread.setDaemon(true);
+			return thread;
+		});
+		exporter.scheduleAtFixedRate(() -> {
+			try {
+				metrics.get().writeSnapshot(file);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+		return exporter;
+	}
+}
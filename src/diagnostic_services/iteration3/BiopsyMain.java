@@ -1,6 +1,8 @@
 package diagnostic_services.iteration3;
 
+import diagnostic_services.file_system.DiagnosticStore;
 import java.util.Scanner;
+
 public class BiopsyMain {
     public static void main(Scanner scnr) {
         BiopsyManager biopsyManager = new BiopsyManager();
@@ -30,7 +32,7 @@ public class BiopsyMain {
 
                     int id = Integer.parseInt(scnr.nextLine());
                     System.out.println();
-                    biopsyManager.viewBiopsiesByUserId(id);
+                    biopsyManager.viewBiopsiesByUserId(id, scnr);
                 }
                 case "4" -> biopsyManager.deleteBiopsy(scnr);
                 case "5" -> biopsyManager.updateBiopsy(scnr);
@@ -40,6 +42,7 @@ public class BiopsyMain {
                 }
                 default -> System.out.println("Invalid input.");
             }
+            DiagnosticStore.save();
         }
     }
 }
\ No newline at end of file
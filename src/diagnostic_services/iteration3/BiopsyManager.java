@@ -1,6 +1,7 @@
 package diagnostic_services.iteration3;
 
 import diagnostic_services.file_system.Biopsy;
+import diagnostic_services.file_system.DiagnosticStore;
 import diagnostic_services.file_system.FilerSystem;
 import diagnostic_services.file_system.Status;
 
@@ -9,9 +10,10 @@ import roles.Doctor;
 import roles.Patient;
 
 public class BiopsyManager {
-  FilerSystem filerSystem = new FilerSystem();
+  private static final int PAGE_SIZE = 20;
 
   public void createBiopsy(Scanner scnr) {
+    FilerSystem filerSystem = DiagnosticStore.get();
     Biopsy.Category type = null;
     Doctor doctor;
     Patient patient;
@@ -67,14 +69,24 @@ public class BiopsyManager {
   }
 
   public void viewBiopsies(Scanner scnr) {
+    FilerSystem filerSystem = DiagnosticStore.get();
     filerSystem.displayBiopsies();
   }
 
-  public void viewBiopsiesByUserId(int id) {
-    filerSystem.displayBiopsiesByUserId(id);
+  public void viewBiopsiesByUserId(int id, Scanner scnr) {
+    FilerSystem filerSystem = DiagnosticStore.get();
+    int next = filerSystem.displayBiopsiesByUserId(id, 0, PAGE_SIZE);
+    while (next != -1) {
+      System.out.print("Press enter for more or Q to stop.\n>\s");
+      if (scnr.nextLine().equalsIgnoreCase("Q")) {
+        break;
+      }
+      next = filerSystem.displayBiopsiesByUserId(id, next, PAGE_SIZE);
+    }
   }
 
   public void deleteBiopsy(Scanner scnr) {
+    FilerSystem filerSystem = DiagnosticStore.get();
     System.out.print("Enter the ID of the biopsy to delete: ");
     String input = scnr.nextLine();
 
@@ -83,6 +95,7 @@ public class BiopsyManager {
   }
 
   public void updateBiopsy(Scanner scnr) {
+    FilerSystem filerSystem = DiagnosticStore.get();
     Biopsy biopsy = null;
     String in;
 
@@ -123,10 +136,10 @@ public class BiopsyManager {
 
           in = scnr.nextLine();
           switch (in) {
-            case "1" -> { biopsy.setStatus(Status.PENDING); }
-            case "2" -> { biopsy.setStatus(Status.IN_PROGRESS); }
-            case "3" -> { biopsy.setStatus(Status.COMPLETED); }
-            case "4" -> { biopsy.setStatus(Status.CANCELLED); }
+            case "1" -> { filerSystem.setBiopsyStatus(biopsy, Status.PENDING); }
+            case "2" -> { filerSystem.setBiopsyStatus(biopsy, Status.IN_PROGRESS); }
+            case "3" -> { filerSystem.setBiopsyStatus(biopsy, Status.COMPLETED); }
+            case "4" -> { filerSystem.setBiopsyStatus(biopsy, Status.CANCELLED); }
             case "5" -> {
               break;
             }
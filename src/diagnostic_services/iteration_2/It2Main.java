@@ -1,11 +1,13 @@
 package diagnostic_services.iteration_2;
 
+import diagnostic_services.file_system.DiagnosticStore;
 import diagnostic_services.file_system.FilerSystem;
 import java.util.Scanner;
 
 public class It2Main {
 
-    public static void pcrReporter(int id, FilerSystem fs, Scanner sc) {
+    public static void pcrReporter(int id, Scanner sc) {
+        FilerSystem fs = DiagnosticStore.get();
         String command;
         boolean running = true;
 
@@ -44,6 +46,7 @@ public class It2Main {
                     case "3" -> running = false;
                     default -> System.out.println("Invalid command, please try again.\n");
                 }
+                fs.saveData();
             }
         } else if (fs.isEMT(id)) {
             while (running) {
@@ -97,13 +100,15 @@ public class It2Main {
                     case "5" -> running = false;
                     default -> System.out.println("Invalid command, please try again.\n");
                 }
+                fs.saveData();
             }
         } else {
             System.out.println("You do not have access to the Sample Manager.\n");
         }
     }
 
-    public static void sampleManager(int id, FilerSystem fs, Scanner sc) {
+    public static void sampleManager(int id, Scanner sc) {
+        FilerSystem fs = DiagnosticStore.get();
         String command;
         boolean running = true;
 
@@ -153,6 +158,7 @@ public class It2Main {
                     case "4" -> running = false;
                     default -> System.out.println("Invalid command, please try again.\n");
                 }
+                fs.saveData();
             }
         } else if (fs.isNurse(id)) {
             while (running) {
@@ -189,6 +195,7 @@ public class It2Main {
                     case "3" -> running = false;
                     default -> System.out.println("Invalid command, please try again.\n");
                 }
+                fs.saveData();
             }
 
         } else if (fs.isLabTech(id)) {
@@ -202,7 +209,8 @@ public class It2Main {
                     3) Edit Sample
                     4) Complete Sample
                     5) Cancel Sample
-                    6) Exit Sample Manager
+                    6) Claim Next Sample
+                    7) Exit Sample Manager
                     >\s"""
                 );
 
@@ -234,7 +242,7 @@ public class It2Main {
 
                             try {
                                 int _id = Integer.parseInt(_in);
-                                fs.editSample(_id);
+                                fs.editSample(_id, id);
                                 break;
                             } catch (NumberFormatException e) {
                                 System.out.println("Invalid ID, please try again.\n");
@@ -249,7 +257,7 @@ public class It2Main {
 
                             try {
                                 int _id = Integer.parseInt(_in);
-                                fs.completeSample(_id);
+                                fs.completeSample(_id, id);
                                 break;
                             } catch (NumberFormatException e) {
                                 System.out.println("Invalid ID, please try again.\n");
@@ -271,9 +279,18 @@ public class It2Main {
                             }
                         }
                     }
-                    case "6" -> running = false;
+                    case "6" -> {
+                        Sample next = fs.claimNextSample(id);
+                        if (next == null) {
+                            System.out.println("There are no pending samples.\n");
+                        } else {
+                            System.out.println("Claimed sample " + next.getId() + ":\n" + next + "\n");
+                        }
+                    }
+                    case "7" -> running = false;
                     default -> System.out.println("Invalid command, please try again.\n");
                 }
+                fs.saveData();
             }
         } else {
             System.out.println("You do not have access to the Pre-Hopsital Care Reporting.\n");
@@ -0,0 +1,108 @@
+package diagnostic_services.iteration_2;
+
+import diagnostic_services.file_system.Status;
+import java.util.EnumMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Work queue the lab techs pull samples from. Every status change is a
+ * compare-and-set on the sample itself, so two techs can never both claim
+ * the same sample and no global lock is taken. The pending queues are only
+ * hints: an entry whose sample has already moved on is skipped when it is
+ * polled. STAT samples are always handed out before routine ones.
+ */
+public class LabWorklist {
+	private final EnumMap<Sample.Priority, ConcurrentLinkedQueue<Sample>> pending = new EnumMap<>(Sample.Priority.class);
+	private final Set<Sample> inProgress = ConcurrentHashMap.newKeySet();
+
+	public LabWorklist() {
+		for (Sample.Priority priority : Sample.Priority.values()) {
+			pending.put(priority, new ConcurrentLinkedQueue<>());
+		}
+	}
+
+	/** Files a sample under its current status. */
+	public void add(Sample sample) {
+		switch (sample.getStatus()) {
+			case PENDING -> pending.get(sample.getPriority()).add(sample);
+			case IN_PROGRESS -> inProgress.add(sample);
+			default -> { }
+		}
+	}
+
+	/** Claims the oldest pending sample, STAT first, or returns null if there is none. */
+	public Sample claimNext(int techId) {
+		for (Sample.Priority priority : Sample.Priority.values()) {
+			ConcurrentLinkedQueue<Sample> queue = pending.get(priority);
+			Sample sample;
+			while ((sample = queue.poll()) != null) {
+				if (claim(sample, techId)) {
+					return sample;
+				}
+			}
+		}
+		return null;
+	}
+
+	/** PENDING to IN_PROGRESS for one specific sample. */
+	public boolean claim(Sample sample, int techId) {
+		if (!sample.compareAndSetStatus(Status.PENDING, Status.IN_PROGRESS)) {
+			return false;
+		}
+		sample.setClaimedBy(techId);
+		inProgress.add(sample);
+		return true;
+	}
+
+	/** IN_PROGRESS to COMPLETED, only for the tech holding the claim. */
+	public boolean complete(Sample sample, int techId) {
+		if (!holds(sample, techId) || !sample.compareAndSetStatus(Status.IN_PROGRESS, Status.COMPLETED)) {
+			return false;
+		}
+		inProgress.remove(sample);
+		return true;
+	}
+
+	/** IN_PROGRESS back to PENDING so another tech can pick the sample up. */
+	public boolean release(Sample sample, int techId) {
+		if (!holds(sample, techId) || !sample.compareAndSetStatus(Status.IN_PROGRESS, Status.PENDING)) {
+			return false;
+		}
+		sample.setClaimedBy(0);
+		inProgress.remove(sample);
+		pending.get(sample.getPriority()).add(sample);
+		return true;
+	}
+
+	/**
+	 * True if the tech holds the claim on an in-progress sample. A sample
+	 * that is in progress with nobody recorded, as in files written before
+	 * claims were kept, goes to the first tech who acts on it.
+	 */
+	private static boolean holds(Sample sample, int techId) {
+		if (sample.getStatus() != Status.IN_PROGRESS) {
+			return false;
+		}
+		return sample.getClaimedBy() == techId || sample.compareAndSetClaimedBy(0, techId);
+	}
+
+	/** Cancels a sample that is still pending or in progress. */
+	public boolean cancel(Sample sample) {
+		while (true) {
+			Status current = sample.getStatus();
+			if (current != Status.PENDING && current != Status.IN_PROGRESS) {
+				return false;
+			}
+			if (sample.compareAndSetStatus(current, Status.CANCELLED)) {
+				inProgress.remove(sample);
+				return true;
+			}
+		}
+	}
+
+	public int inProgressCount() {
+		return inProgress.size();
+	}
+}
@@ -1,5 +1,6 @@
 package diagnostic_services.iteration_2;
 
+import java.util.concurrent.atomic.AtomicBoolean;
 import roles.EMT;
 import roles.Patient;
 
@@ -8,6 +9,7 @@ public class PCR {
   Ambulance ambulance;
   Patient patient;
   String notes;
+  private final AtomicBoolean dirty = new AtomicBoolean(true);
 
   public PCR(EMT emt1, EMT emt2) {
     this.ambulance = new Ambulance(emt1, emt2);
@@ -22,6 +24,7 @@ public class PCR {
 
   public void setId(int id) {
     this.id = id;
+    dirty.set(true);
   }
 
   public int getId() {
@@ -34,6 +37,7 @@ public class PCR {
 
   public void setPatient(Patient patient) {
     this.patient = patient;
+    dirty.set(true);
   }
 
   public Patient getPatient() {
@@ -42,12 +46,23 @@ public class PCR {
 
   public void setNotes(String notes) {
     this.notes = notes;
+    dirty.set(true);
   }
 
   public String getNotes() {
     return notes;
   }
 
+  /** True if the PCR changed since it was last written. */
+  public boolean isDirty() {
+    return dirty.get();
+  }
+
+  /** Clears the flag, returning whether it was set; call before writing the current state out. */
+  public boolean clearDirty() {
+    return dirty.getAndSet(false);
+  }
+
   @Override
   public String toString() {
     if (patient != null) {
@@ -0,0 +1,66 @@
+package diagnostic_services.iteration_2;
+
+import diagnostic_services.file_system.DiagnosticStore;
+import diagnostic_services.file_system.FilerSystem;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Files PCRs in bulk from NDJSON, one report per line. Each argument is a
+ * file or a directory of *.ndjson files, and each file is filed as one
+ * batch; with no arguments, or "-", the reports are read from stdin.
+ *
+ * Usage: java diagnostic_services.iteration_2.PCRIngest [file | directory | -]...
+ */
+public class PCRIngest {
+
+    public static void main(String[] args) throws IOException {
+        FilerSystem fs = DiagnosticStore.get();
+        List<Path> files = new ArrayList<>();
+        boolean stdin = args.length == 0;
+
+        for (String arg : args) {
+            if (arg.equals("-")) {
+                stdin = true;
+            } else if (Files.isDirectory(Path.of(arg))) {
+                try (DirectoryStream<Path> batch = Files.newDirectoryStream(Path.of(arg), "*.ndjson")) {
+                    List<Path> sorted = new ArrayList<>();
+                    batch.forEach(sorted::add);
+                    sorted.sort(null);
+                    files.addAll(sorted);
+                }
+            } else {
+                files.add(Path.of(arg));
+            }
+        }
+
+        if (stdin) {
+            report("stdin", fs.ingestPCRs(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+        }
+        for (Path file : files) {
+            try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                report(file.toString(), fs.ingestPCRs(in));
+            }
+        }
+        fs.close();
+    }
+
+    private static void report(String source, FilerSystem.PCRBatch batch) {
+        List<Integer> ids = batch.ids();
+        if (ids.isEmpty()) {
+            System.out.println(source + ": no PCRs filed");
+        } else {
+            System.out.println(source + ": filed " + ids.size() + " PCRs, ids " + ids.get(0) + "-" + ids.get(ids.size() - 1));
+        }
+        for (String reason : batch.rejected()) {
+            System.out.println("  rejected " + reason);
+        }
+    }
+}
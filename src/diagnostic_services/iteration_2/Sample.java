@@ -1,29 +1,50 @@
 package diagnostic_services.iteration_2;
 
 import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import roles.Patient;
 import diagnostic_services.file_system.Status;
+import diagnostic_services.file_system.StatusTimes;
 
 public class Sample {
   private int id = 0;
   private final String sampleType;
-  private Status status;
+  private final AtomicReference<Status> status = new AtomicReference<>();
+  private final StatusTimes statusTimes = new StatusTimes();
+  private volatile Priority priority = Priority.ROUTINE;
+  private final AtomicInteger claimedBy = new AtomicInteger();
+  private final AtomicBoolean dirty = new AtomicBoolean(true);
   private final Patient patient;
-  private final LinkedHashMap<String, String> results = new LinkedHashMap<>();
+  private final SampleResults results;
+  private final int row;
 
   public Sample(int id, String sampleType, Patient patient) {
-    this.id = id;
-    this.sampleType = sampleType;
-    this.patient = patient;
-    this.status = Status.PENDING;
+    this(id, sampleType, patient, new SampleResults(sampleType));
+  }
+
+  /** A sample whose results are a row in {@code tables}' table for its type. */
+  public Sample(int id, String sampleType, Patient patient, SampleResults.Tables tables) {
+    this(id, sampleType, patient, tables.forType(sampleType));
   }
 
-  public Sample(int id, String sampleType, Status status, Patient patient, LinkedHashMap<String, String> results) {
+  private Sample(int id, String sampleType, Patient patient, SampleResults results) {
     this.id = id;
     this.sampleType = sampleType;
-    this.status = status;
     this.patient = patient;
-    this.results.putAll(results);
+    this.status.set(Status.PENDING);
+    this.statusTimes.record(Status.PENDING);
+    this.results = results;
+    this.row = results.addRow();
+  }
+
+  public Sample(int id, String sampleType, Status status, Patient patient, LinkedHashMap<String, String> results,
+      SampleResults.Tables tables) {
+    this(id, sampleType, patient, tables);
+    this.status.set(status);
+    this.statusTimes.record(status);
+    setResults(results);
   }
 
   public int getId() {
@@ -32,6 +53,7 @@ public class Sample {
 
   public void setId(int id) {
     this.id = id;
+    dirty.set(true);
   }
 
   public Patient getPatient() {
@@ -39,11 +61,24 @@ public class Sample {
   }
 
   public void setResults(LinkedHashMap<String, String> results) {
-    this.results.putAll(results);
+    for (String field : results.keySet()) {
+      this.results.set(row, field, results.get(field));
+    }
+    dirty.set(true);
   }
 
+  /** A copy of this sample's results; use {@link #setResult} to change one. */
   public LinkedHashMap<String, String> getResults() {
-    return results;
+    return results.row(row);
+  }
+
+  public String getResult(String field) {
+    return results.get(row, field);
+  }
+
+  public void setResult(String field, String value) {
+    results.set(row, field, value);
+    dirty.set(true);
   }
 
   public String getSampleType() {
@@ -51,17 +86,77 @@ public class Sample {
   }
 
   public Status getStatus() {
-    return status;
+    return status.get();
   }
 
   public void setStatus(Status status) {
-    this.status = status;
+    this.status.set(status);
+    statusTimes.record(status);
+    dirty.set(true);
+  }
+
+  /** Moves to {@code next} only if the sample is still in {@code expected}. */
+  public boolean compareAndSetStatus(Status expected, Status next) {
+    if (!status.compareAndSet(expected, next)) {
+      return false;
+    }
+    statusTimes.record(next);
+    dirty.set(true);
+    return true;
+  }
+
+  /** When the sample first reached each status. */
+  public StatusTimes getStatusTimes() {
+    return statusTimes;
+  }
+
+  public Priority getPriority() {
+    return priority;
+  }
+
+  public void setPriority(Priority priority) {
+    this.priority = priority;
+    dirty.set(true);
+  }
+
+  /** True if the sample changed since it was last written. */
+  public boolean isDirty() {
+    return dirty.get();
+  }
+
+  /** Clears the flag, returning whether it was set; call before writing the current state out. */
+  public boolean clearDirty() {
+    return dirty.getAndSet(false);
+  }
+
+  /** Id of the lab tech working the sample, or 0 if nobody has claimed it. */
+  public int getClaimedBy() {
+    return claimedBy.get();
+  }
+
+  public void setClaimedBy(int techId) {
+    claimedBy.set(techId);
+    dirty.set(true);
+  }
+
+  /** Sets the claim only if it still holds {@code expected}. */
+  public boolean compareAndSetClaimedBy(int expected, int techId) {
+    if (!claimedBy.compareAndSet(expected, techId)) {
+      return false;
+    }
+    dirty.set(true);
+    return true;
   }
 
   @Override
   public String toString() {
-    return  "Sample Type: " + sampleType + ", Status: " + status + ", Patient: " + patient +
-            "\nResults: " + results +
+    return  "Sample Type: " + sampleType + ", Status: " + status.get() + ", Priority: " + priority + ", Patient: " + patient +
+            "\nResults: " + getResults() +
             "\n------------------------";
   }
+
+  public static enum Priority {
+    STAT,
+    ROUTINE
+  }
 }
@@ -0,0 +1,185 @@
+package diagnostic_services.iteration_2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Result values for every sample of one sample type, stored by column.
+ * Field names are kept once per type instead of once per sample. Each column
+ * holds an int code per sample row: numbers live in a parallel double array
+ * and text values are dictionary encoded, so repeated values such as "NULL"
+ * are stored once per column. Reading every value of one field is a scan
+ * over a single column.
+ */
+public final class SampleResults {
+	/** One table per sample type, owned by whoever owns the samples. */
+	public static final class Tables {
+		private final ConcurrentHashMap<String, SampleResults> byType = new ConcurrentHashMap<>();
+
+		public SampleResults forType(String sampleType) {
+			return byType.computeIfAbsent(sampleType, SampleResults::new);
+		}
+
+		/** The table for the type, or null if no sample of that type was added. */
+		public SampleResults get(String sampleType) {
+			return byType.get(sampleType);
+		}
+	}
+
+	private static final int UNSET = 0;
+	private static final int NUMBER = 1;
+	private static final int FIRST_TEXT = 2;
+
+	private final String sampleType;
+	private final HashMap<String, Integer> fieldIndex = new HashMap<>();
+	private final ArrayList<String> fields = new ArrayList<>();
+	private final ArrayList<Column> columns = new ArrayList<>();
+	private int rows = 0;
+
+	/** A table of its own, for a sample that belongs to no {@link Tables}. */
+	public SampleResults(String sampleType) {
+		this.sampleType = sampleType;
+	}
+
+	public String getSampleType() {
+		return sampleType;
+	}
+
+	synchronized int addRow() {
+		return rows++;
+	}
+
+	public synchronized void set(int row, String field, String value) {
+		Integer index = fieldIndex.get(field);
+		if (index == null) {
+			index = fields.size();
+			String name = field.intern();
+			fieldIndex.put(name, index);
+			fields.add(name);
+			columns.add(new Column());
+		}
+		columns.get(index).set(row, value);
+	}
+
+	public synchronized String get(int row, String field) {
+		Integer index = fieldIndex.get(field);
+		return index == null ? null : columns.get(index).get(row);
+	}
+
+	/** Copies one sample's results out in field order. */
+	public synchronized LinkedHashMap<String, String> row(int row) {
+		LinkedHashMap<String, String> values = new LinkedHashMap<>();
+		for (int i = 0; i < fields.size(); i++) {
+			String value = columns.get(i).get(row);
+			if (value != null) {
+				values.put(fields.get(i), value);
+			}
+		}
+		return values;
+	}
+
+	/** Every numeric value recorded for the field across this sample type. */
+	public synchronized double[] numbers(String field) {
+		Integer index = fieldIndex.get(field);
+		if (index == null) {
+			return new double[0];
+		}
+		Column column = columns.get(index);
+		double[] out = new double[rows];
+		int n = 0;
+		for (int row = 0; row < Math.min(rows, column.codes.length); row++) {
+			if (column.codes[row] == NUMBER) {
+				out[n++] = column.numbers[row];
+			}
+		}
+		return Arrays.copyOf(out, n);
+	}
+
+	private static final class Column {
+		private int[] codes = new int[16];
+		private double[] numbers;
+		private final ArrayList<String> dictionary = new ArrayList<>();
+		private final HashMap<String, Integer> dictionaryIndex = new HashMap<>();
+
+		void set(int row, String value) {
+			ensure(row);
+			if (value == null) {
+				codes[row] = UNSET;
+				return;
+			}
+
+			double number = parseNumber(value);
+			if (!Double.isNaN(number)) {
+				if (numbers == null) {
+					numbers = new double[codes.length];
+				}
+				numbers[row] = number;
+				codes[row] = NUMBER;
+				return;
+			}
+
+			Integer code = dictionaryIndex.get(value);
+			if (code == null) {
+				code = FIRST_TEXT + dictionary.size();
+				dictionary.add(value);
+				dictionaryIndex.put(value, code);
+			}
+			codes[row] = code;
+		}
+
+		String get(int row) {
+			if (row >= codes.length) {
+				return null;
+			}
+			int code = codes[row];
+			if (code == UNSET) {
+				return null;
+			}
+			if (code == NUMBER) {
+				return format(numbers[row]);
+			}
+			return dictionary.get(code - FIRST_TEXT);
+		}
+
+		private void ensure(int row) {
+			if (row < codes.length) {
+				return;
+			}
+			int size = Math.max(row + 1, codes.length * 2);
+			codes = Arrays.copyOf(codes, size);
+			if (numbers != null) {
+				numbers = Arrays.copyOf(numbers, size);
+			}
+		}
+	}
+
+	/** Parses values that print back exactly as given; anything else stays text. */
+	private static double parseNumber(String value) {
+		int length = value.length();
+		if (length == 0 || length > 18) {
+			return Double.NaN;
+		}
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (!(c >= '0' && c <= '9') && !(c == '-' && i == 0) && c != '.') {
+				return Double.NaN;
+			}
+		}
+		try {
+			double number = Double.parseDouble(value);
+			return format(number).equals(value) ? number : Double.NaN;
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	private static String format(double number) {
+		if (number == Math.rint(number) && Math.abs(number) < 1e15) {
+			return Long.toString((long) number);
+		}
+		return Double.toString(number);
+	}
+}